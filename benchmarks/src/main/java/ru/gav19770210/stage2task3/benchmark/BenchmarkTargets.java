@@ -0,0 +1,132 @@
+package ru.gav19770210.stage2task3.benchmark;
+
+import ru.gav19770210.stage2task3.Cache;
+import ru.gav19770210.stage2task3.CacheCleanerConfig;
+import ru.gav19770210.stage2task3.CacheCleanerType;
+
+/**
+ * Кэшируемые классы для замеров производительности.
+ * <p>
+ * Настройки кэширования задаются аннотациями, поэтому для каждого сочетания параметров замера
+ * объявлен отдельный класс.
+ */
+final class BenchmarkTargets {
+    private BenchmarkTargets() {
+    }
+
+    /**
+     * Создание объекта с заданными типом очистки кэша и сроком жизни значений.
+     *
+     * @param cleanerType  тип механизма очистки кэшированных данных
+     * @param expirePeriod срок жизни значений: 0 или 60000
+     * @return кэшируемый объект
+     */
+    static Computable create(CacheCleanerType cleanerType, long expirePeriod) {
+        if (expirePeriod != 0 && expirePeriod != 60000) {
+            throw new IllegalArgumentException("Не поддерживаемый срок жизни: " + expirePeriod);
+        }
+        if (cleanerType == CacheCleanerType.GET_VALUE) {
+            return expirePeriod == 0 ? new GetValueTarget() : new GetValueExpireTarget();
+        }
+        return expirePeriod == 0 ? new BackgroundTarget() : new BackgroundExpireTarget();
+    }
+
+    /**
+     * Создание объекта с заданным количеством полей состояния.
+     *
+     * @param fieldCount количество полей: 2, 8 или 32
+     * @return кэшируемый объект
+     */
+    static Computable createWithFields(int fieldCount) {
+        return switch (fieldCount) {
+            case 2 -> new Fields2Target();
+            case 8 -> new Fields8Target();
+            case 32 -> new Fields32Target();
+            default -> throw new IllegalArgumentException("Не поддерживаемое количество полей: " + fieldCount);
+        };
+    }
+
+    static long work(long key) {
+        return key * 31 + 7;
+    }
+
+    @CacheCleanerConfig(cacheCleanerType = CacheCleanerType.GET_VALUE)
+    public static class GetValueTarget implements Computable {
+        @Override
+        @Cache
+        public long compute(long key) {
+            return work(key);
+        }
+    }
+
+    @CacheCleanerConfig(cacheCleanerType = CacheCleanerType.GET_VALUE)
+    public static class GetValueExpireTarget implements Computable {
+        @Override
+        @Cache(expirePeriod = 60000)
+        public long compute(long key) {
+            return work(key);
+        }
+    }
+
+    @CacheCleanerConfig(cacheCleanerType = CacheCleanerType.BACKGROUND)
+    public static class BackgroundTarget implements Computable {
+        @Override
+        @Cache
+        public long compute(long key) {
+            return work(key);
+        }
+    }
+
+    @CacheCleanerConfig(cacheCleanerType = CacheCleanerType.BACKGROUND)
+    public static class BackgroundExpireTarget implements Computable {
+        @Override
+        @Cache(expirePeriod = 60000)
+        public long compute(long key) {
+            return work(key);
+        }
+    }
+
+    /**
+     * Объект с ограниченным количеством значений в кэше, для замеров промахов без роста памяти.
+     */
+    public static class BoundedTarget implements Computable {
+        @Override
+        @Cache(maxEntries = 65536)
+        public long compute(long key) {
+            return work(key);
+        }
+    }
+
+    public static class Fields2Target implements Computable {
+        private long f0 = 0, f1 = 1;
+
+        @Override
+        @Cache
+        public long compute(long key) {
+            return work(key + f0 + f1);
+        }
+    }
+
+    public static class Fields8Target implements Computable {
+        private long f0 = 0, f1 = 1, f2 = 2, f3 = 3, f4 = 4, f5 = 5, f6 = 6, f7 = 7;
+
+        @Override
+        @Cache
+        public long compute(long key) {
+            return work(key + f0 + f1 + f2 + f3 + f4 + f5 + f6 + f7);
+        }
+    }
+
+    public static class Fields32Target implements Computable {
+        private long f0 = 0, f1 = 1, f2 = 2, f3 = 3, f4 = 4, f5 = 5, f6 = 6, f7 = 7;
+        private long f8 = 8, f9 = 9, f10 = 10, f11 = 11, f12 = 12, f13 = 13, f14 = 14, f15 = 15;
+        private String s0 = "s0", s1 = "s1", s2 = "s2", s3 = "s3", s4 = "s4", s5 = "s5", s6 = "s6", s7 = "s7";
+        private Integer i0 = 0, i1 = 1, i2 = 2, i3 = 3, i4 = 4, i5 = 5, i6 = 6, i7 = 7;
+
+        @Override
+        @Cache
+        public long compute(long key) {
+            return work(key + f0 + f15 + s7.length() + i7);
+        }
+    }
+}
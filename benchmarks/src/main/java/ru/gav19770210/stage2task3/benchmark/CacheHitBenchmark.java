@@ -0,0 +1,77 @@
+package ru.gav19770210.stage2task3.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.gav19770210.stage2task3.CacheCleanerType;
+import ru.gav19770210.stage2task3.CacheFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Замер вызовов кэшируемого метода при попадании в кэш.
+ * <p>
+ * Все ключи загружаются в кэш до начала замера, каждый поток перебирает ключи по кругу.
+ * Количество потоков задаётся параметром запуска <b>-t</b>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheHitBenchmark {
+    @Param({"GET_VALUE", "BACKGROUND"})
+    private CacheCleanerType cleanerType;
+    @Param({"0", "60000"})
+    private long expirePeriod;
+    @Param({"1", "1024", "65536"})
+    private int keyCardinality;
+    @Param({"REFLECT", "GENERATED"})
+    private ProxyType proxyType;
+
+    private Computable proxy;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        proxy = proxyType.makeCacheable(BenchmarkTargets.create(cleanerType, expirePeriod));
+        for (long key = 0; key < keyCardinality; key++) {
+            proxy.compute(key);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        CacheFactory.clearCacheStorages();
+    }
+
+    @Benchmark
+    public long hit(KeySequence keySequence) {
+        return proxy.compute(keySequence.nextKey(keyCardinality));
+    }
+
+    /**
+     * Последовательность ключей потока.
+     */
+    @State(Scope.Thread)
+    public static class KeySequence {
+        private long key;
+
+        long nextKey(int keyCardinality) {
+            if (++key >= keyCardinality) {
+                key = 0;
+            }
+            return key;
+        }
+    }
+}
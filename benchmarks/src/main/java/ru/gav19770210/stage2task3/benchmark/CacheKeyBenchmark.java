@@ -0,0 +1,55 @@
+package ru.gav19770210.stage2task3.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.gav19770210.stage2task3.CacheFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Замер стоимости формирования ключа кэша в зависимости от количества полей состояния объекта.
+ * <p>
+ * Вызов выполняется с одним и тем же ключом, поэтому время определяется в основном формированием ключа
+ * и поиском значения в кэше.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheKeyBenchmark {
+    @Param({"2", "8", "32"})
+    private int fieldCount;
+    @Param({"REFLECT", "GENERATED"})
+    private ProxyType proxyType;
+
+    private Computable proxy;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        proxy = proxyType.makeCacheable(BenchmarkTargets.createWithFields(fieldCount));
+        proxy.compute(1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        CacheFactory.clearCacheStorages();
+    }
+
+    @Benchmark
+    public long hit() {
+        return proxy.compute(1);
+    }
+}
@@ -0,0 +1,53 @@
+package ru.gav19770210.stage2task3.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.gav19770210.stage2task3.CacheFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Замер вызовов кэшируемого метода при промахе кэша.
+ * <p>
+ * Каждый вызов выполняется с новым ключом, размер кэша ограничен, поэтому замер включает вытеснение значений.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheMissBenchmark {
+    @Param({"REFLECT", "GENERATED"})
+    private ProxyType proxyType;
+
+    private final AtomicLong keys = new AtomicLong();
+    private Computable proxy;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        proxy = proxyType.makeCacheable(new BenchmarkTargets.BoundedTarget());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        CacheFactory.clearCacheStorages();
+    }
+
+    @Benchmark
+    public long miss() {
+        return proxy.compute(keys.incrementAndGet());
+    }
+}
@@ -0,0 +1,8 @@
+package ru.gav19770210.stage2task3.benchmark;
+
+/**
+ * Интерфейс кэшируемых объектов для замеров производительности.
+ */
+public interface Computable {
+    long compute(long key);
+}
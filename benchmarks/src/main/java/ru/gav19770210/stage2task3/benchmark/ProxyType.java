@@ -0,0 +1,23 @@
+package ru.gav19770210.stage2task3.benchmark;
+
+import ru.gav19770210.stage2task3.CacheFactory;
+
+/**
+ * Способ создания прокси-объекта.
+ */
+public enum ProxyType {
+    REFLECT {  // прокси-объект java.lang.reflect.Proxy
+        @Override
+        Computable makeCacheable(Computable target) {
+            return (Computable) CacheFactory.makeCacheable(target);
+        }
+    },
+    GENERATED {  // прокси-объект сгенерированного класса
+        @Override
+        Computable makeCacheable(Computable target) {
+            return (Computable) CacheFactory.makeGeneratedCacheable(target);
+        }
+    };
+
+    abstract Computable makeCacheable(Computable target);
+}
@@ -0,0 +1,27 @@
+package ru.gav19770210.stage2task3;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Пакетное кэширование метода с параметром-коллекцией, возвращающего {@link java.util.Map}.
+ * <p>
+ * Задаётся вместе с аннотацией <b>@Cache</b>, настройки хранения значений берутся из неё.
+ * Коллекция разбивается на элементы, результат кэшируется по каждому элементу отдельно.
+ * Метод проксируемого объекта вызывается один раз только с элементами, для которых нет значений в кэше,
+ * результат объединяется со значениями из кэша в порядке элементов исходной коллекции.
+ * Элементы, отсутствующие в результате вызова, не кэшируются.
+ * Общее хранилище второго уровня (параметр <b>shared</b> аннотации <b>@Cache</b>) не поддерживается.
+ * <p>
+ * Параметр-коллекция должен иметь тип {@link java.util.Collection}, {@link java.util.List} или {@link java.util.Set}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface BulkCache {
+    /**
+     * Номер параметра-коллекции метода, начиная с 0.
+     */
+    int parameter() default 0;
+}
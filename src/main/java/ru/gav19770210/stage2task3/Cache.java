@@ -14,4 +14,91 @@ public @interface Cache {
      *  помеченных аннотацией <b>@Mutator</b>.
      */
     long expirePeriod() default 0;
+
+    /**
+     *  Максимальное количество значений метода в кэше.
+     *  <p>Если задано 0, то используется значение по умолчанию из аннотации <b>@CacheCleanerConfig</b>.
+     *  При превышении ограничения значения вытесняются по алгоритму W-TinyLFU.
+     */
+    long maxEntries() default 0;
+
+    /**
+     *  Максимальный суммарный вес значений метода в кэше.
+     *  <p>Если задано 0, то используется значение по умолчанию из аннотации <b>@CacheCleanerConfig</b>.
+     *  Вес значения определяется реализацией {@link #weigher()}.
+     */
+    long maxWeight() default 0;
+
+    /**
+     *  Класс определения веса кэшированного значения.
+     *  <p>По умолчанию вес каждого значения равен 1.
+     */
+    Class<? extends CacheWeigher> weigher() default CacheWeigher.class;
+
+    /**
+     *  Время ожидания в миллисекундах результата вызова метода, который выполняется другим потоком для того же ключа.
+     *  <p>Если задано 0, то ожидание не ограничено.
+     *  По истечении времени ожидания метод вызывается текущим потоком.
+     */
+    long loadTimeout() default 0;
+
+    /**
+     *  Период в миллисекундах после загрузки значения, по истечении которого при обращении к значению
+     *  выполняется его обновление в фоновом режиме. До завершения обновления возвращается текущее значение.
+     *  <p>Если задано 0, то фоновое обновление не выполняется.
+     */
+    long refreshAfter() default 0;
+
+    /**
+     *  Период в миллисекундах после истечения срока жизни значения, в течение которого при обращении к значению
+     *  возвращается устаревшее значение, а его обновление выполняется в фоновом режиме.
+     *  <p>Если задано 0, то после истечения срока жизни значение обновляется при вызове метода.
+     */
+    long staleWhileRevalidate() default 0;
+
+    /**
+     *  Имена полей проксируемого объекта, от которых зависит результат метода.
+     *  <p>В ключ кэша включаются только эти поля, значения метода сбрасываются только методами <b>@Mutator</b>,
+     *  изменяющими эти поля или не задающими изменяемые поля.
+     *  Если поля не заданы, то результат метода зависит от всех полей объекта.
+     */
+    String[] dependsOn() default {};
+
+    /**
+     *  Номера параметров метода, начиная с 0, которые включаются в ключ кэша.
+     *  <p>Если номера не заданы, то в ключ включаются все параметры.
+     *  Поля объекта, включаемые в ключ, задаются параметром <b>dependsOn</b>.
+     */
+    int[] keyParameters() default {};
+
+    /**
+     *  Класс формирования части ключа кэша по параметрам вызова вместо самих параметров.
+     *  <p>По умолчанию в ключ включаются параметры вызова. Не задаётся вместе с <b>keyParameters</b>.
+     */
+    Class<? extends CacheKeyExtractor> keyExtractor() default CacheKeyExtractor.class;
+
+    /**
+     *  Максимальный размер в байтах хранилища вне кучи для значений, вытесненных по ограничению
+     *  <b>maxEntries</b> или <b>maxWeight</b>. При обращении значение возвращается из хранилища в кэш.
+     *  <p>Память выделяется блоками по 256 байт, размер округляется вниз до целого количества блоков
+     *  и должен быть не меньше одного блока. Если задано 0, то вытесненные значения удаляются.
+     */
+    long offHeapMaxBytes() default 0;
+
+    /**
+     *  Класс преобразования ключей и значений для хранения вне кучи и в общем хранилище.
+     *  <p>По умолчанию используется стандартная сериализация Java {@link CacheJavaSerializer}.
+     */
+    Class<? extends CacheSerializer> serializer() default CacheJavaSerializer.class;
+
+    /**
+     *  Использование общего хранилища второго уровня, подключённого через
+     *  {@link CacheFactory#setSharedStore(CacheSharedStore)}.
+     *  <p>При промахе локального кэша значение ищется в общем хранилище, вычисленное значение помещается в него.
+     *  Вызов метода с аннотацией <b>@Mutator</b> удаляет из общего хранилища значения метода с нулевым сроком жизни.
+     *  Для методов, возвращающих {@link java.util.concurrent.CompletableFuture}
+     *  или {@link java.util.concurrent.CompletionStage}, общее хранилище не используется.
+     *  Для методов с аннотацией <b>@BulkCache</b> общее хранилище не поддерживается.
+     */
+    boolean shared() default false;
 }
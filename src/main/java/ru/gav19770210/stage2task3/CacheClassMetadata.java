@@ -0,0 +1,150 @@
+package ru.gav19770210.stage2task3;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Класс <b>CacheClassMetadata</b> хранит результат анализа аннотаций класса проксируемого объекта.
+ * <p>
+ * Анализ методов и аннотаций класса через java.lang.reflect выполняется один раз при первом обращении к классу,
+ * поэтому создание последующих прокси-объектов этого класса не выполняет поиск методов и чтение аннотаций.
+ * Метаданные не содержат состояния отдельных прокси-объектов и разделяются всеми прокси-объектами класса.
+ */
+final class CacheClassMetadata {
+    /**
+     * Метаданные в разрезе классов проксируемых объектов.
+     */
+    private static final ClassValue<CacheClassMetadata> METADATA = new ClassValue<>() {
+        @Override
+        protected CacheClassMetadata computeValue(Class<?> objectClass) {
+            return new CacheClassMetadata(objectClass);
+        }
+    };
+    /**
+     * Аннотация настроек кэширования класса, null - не задана.
+     */
+    private final CacheCleanerConfig cacheCleanerConfig;
+    /**
+     * Аннотация сохранения кэша в файл, null - не задана.
+     */
+    private final CachePersistence persistence;
+    private final CacheCleanerType cleanerType;
+    private final CacheStateType stateType;
+    private final CacheScope scope;
+    /**
+     * Методы класса с аннотацией <b>@Cache</b>.
+     */
+    private final Map<Method, Cache> cacheMethods;
+    private final boolean cacheableWithExpirePeriod;
+    /**
+     * Количество кэшируемых методов с назначенными индексами в обработчике.
+     */
+    private final int cacheMethodCount;
+    /**
+     * Неизменяемая коллекция соответствия методов прокси-объекта и проксируемого объекта,
+     * создаётся только для классов с кэшируемыми методами.
+     */
+    private final Map<Method, CacheInvocationHandler.CachedObjectMethod> cachedObjectMethods;
+    /**
+     * Интерфейсы прокси-объекта: интерфейсы класса и {@link CacheHandle}.
+     */
+    private final Class<?>[] proxyInterfaces;
+
+    private CacheClassMetadata(Class<?> objectClass) {
+        this.cacheCleanerConfig = objectClass.getAnnotation(CacheCleanerConfig.class);
+        this.persistence = objectClass.getAnnotation(CachePersistence.class);
+        if (Objects.nonNull(cacheCleanerConfig)) {
+            this.cleanerType = cacheCleanerConfig.cacheCleanerType();
+            this.stateType = cacheCleanerConfig.cacheStateType();
+            this.scope = cacheCleanerConfig.scope();
+        } else {
+            this.cleanerType = CacheCleanerType.GET_VALUE;
+            this.stateType = CacheStateType.FIELDS;
+            this.scope = CacheScope.INSTANCE;
+        }
+        Map<Method, Cache> methods = new LinkedHashMap<>();
+        Arrays.stream(objectClass.getMethods())
+                .filter(method -> method.isAnnotationPresent(Cache.class))
+                .forEach(method -> methods.put(method, method.getAnnotation(Cache.class)));
+        this.cacheMethods = Map.copyOf(methods);
+        this.cacheableWithExpirePeriod = methods.values().stream().anyMatch(cache -> cache.expirePeriod() > 0);
+        this.cachedObjectMethods = methods.isEmpty()
+                ? Map.of()
+                : CacheInvocationHandler.createCachedObjectMethods(objectClass);
+        this.proxyInterfaces = createProxyInterfaces(objectClass);
+        this.cacheMethodCount = (int) cachedObjectMethods.values().stream()
+                .filter(CacheInvocationHandler.CachedObjectMethod::isCache)
+                .distinct()
+                .count();
+    }
+
+    private static Class<?>[] createProxyInterfaces(Class<?> objectClass) {
+        var interfaces = objectClass.getInterfaces();
+        if (CacheHandle.class.isAssignableFrom(objectClass)) {
+            return interfaces;
+        }
+        var proxyInterfaces = Arrays.copyOf(interfaces, interfaces.length + 1);
+        proxyInterfaces[interfaces.length] = CacheHandle.class;
+        return proxyInterfaces;
+    }
+
+    /**
+     * Получение метаданных класса проксируемого объекта.
+     *
+     * @param objectClass класс проксируемого объекта
+     * @return метаданные класса
+     */
+    public static CacheClassMetadata forClass(Class<?> objectClass) {
+        return METADATA.get(objectClass);
+    }
+
+    public CacheCleanerConfig getCacheCleanerConfig() {
+        return cacheCleanerConfig;
+    }
+
+    public CachePersistence getPersistence() {
+        return persistence;
+    }
+
+    public CacheCleanerType getCleanerType() {
+        return cleanerType;
+    }
+
+    public CacheStateType getStateType() {
+        return stateType;
+    }
+
+    public CacheScope getScope() {
+        return scope;
+    }
+
+    public Map<Method, Cache> getCacheMethods() {
+        return cacheMethods;
+    }
+
+    public boolean isCacheable() {
+        return !cacheMethods.isEmpty();
+    }
+
+    public boolean isCacheableWithExpirePeriod() {
+        return cacheableWithExpirePeriod;
+    }
+
+    public int getCacheMethodCount() {
+        return cacheMethodCount;
+    }
+
+    /**
+     * @return копия массива интерфейсов прокси-объекта
+     */
+    public Class<?>[] getProxyInterfaces() {
+        return proxyInterfaces.clone();
+    }
+
+    public Map<Method, CacheInvocationHandler.CachedObjectMethod> getCachedObjectMethods() {
+        return cachedObjectMethods;
+    }
+}
@@ -1,42 +1,71 @@
 package ru.gav19770210.stage2task3;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.lang.ref.WeakReference;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Сборщик кэшированных данных с истёкшим сроком жизни.
- * Очистка автоматически запускается при добавлении первого хранилища кэшированных данных.
- * Стратегия очистки - интеравальное выполнение.
- * Длина интервала определяется как минимальное время жизни объектов в очищаемых хранилищах кэшированных данных.
- * При этом, каждый из очищаемых хранилищ чистится не чаще чем минимальное время жизни его объектов.
+ * <p>
+ * Очистка выполняется пулом потоков планировщика: для каждого хранилища кэшированных данных планируется
+ * отдельная задача, которая запускается к ближайшему времени истечения срока жизни значений хранилища,
+ * но не реже минимального срока жизни его значений. После очистки задача планируется заново.
+ * Если очистка остановлена по размеру пакета, то следующая очистка планируется без ожидания срока жизни,
+ * продолжая разбор с места остановки.
+ * <p>
+ * Хранилища удерживаются по слабой ссылке: задача хранилища, прокси-объект которого удалён
+ * сборщиком мусора, снимается с планирования. Добавление и удаление хранилищ допускается из любых потоков.
+ * <p>
+ * Количество потоков очистки задаётся системным свойством <b>ru.gav19770210.stage2task3.cacheCleanerThreads</b>,
+ * по умолчанию - один поток.
  */
 public class CacheCleaner {
     /**
-     * Количество миллисекунд, по умолчанию, сна между циклами очистки кэшированных данных.
+     * Системное свойство количества потоков очистки.
      */
-    private final static int DURATION_SLEEP_CACHE_CLEANER_IN_MILLISECONDS = 1000;
+    public static final String CACHE_CLEANER_THREADS_PROPERTY = "ru.gav19770210.stage2task3.cacheCleanerThreads";
     /**
-     * Список хранилищ кэшированных данных прокси-объектов.
+     * Минимальный интервал в миллисекундах между циклами очистки одного хранилища.
      */
-    private final List<CacheStoreItem> cacheStorages;
+    private static final long MIN_CLEAN_DELAY_IN_MILLISECONDS = 1;
+    private static final System.Logger LOGGER = System.getLogger(CacheCleaner.class.getName());
     /**
-     * Поток сборщика кэшированных данных.
+     * Коллекция хранилищ кэшированных данных прокси-объектов.
      */
-    private final CacheCleanerTask cacheCleanerThread;
+    private final Set<CacheStoreItem> cacheStorages = ConcurrentHashMap.newKeySet();
     /**
-     * Интерфейс получения текущего времени.
+     * Планировщик задач очистки.
      */
-    private Clockable clock;
+    private final ScheduledThreadPoolExecutor scheduler;
     /**
-     * Минимальный срок жизни кэшированных значений в хранилище,
-     * для расчёта минимального периода запуска цикла очистки.
+     * Интерфейс получения текущего времени.
      */
-    private long minExpirePeriod = Long.MAX_VALUE;
+    private volatile Clockable clock;
 
     public CacheCleaner(Clockable clock) {
-        this.cacheStorages = new ArrayList<>();
-        this.cacheCleanerThread = getCacheCleanerThread();
+        this(clock, Integer.getInteger(CACHE_CLEANER_THREADS_PROPERTY, 1));
+    }
+
+    /**
+     * @param clock       интерфейс получения текущего времени
+     * @param threadCount количество потоков очистки
+     */
+    public CacheCleaner(Clockable clock, int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Количество потоков очистки должно быть больше нуля: " + threadCount);
+        }
+        var threadNumber = new AtomicInteger();
+        this.scheduler = new ScheduledThreadPoolExecutor(threadCount, runnable -> {
+            var thread = new Thread(runnable, "cache-cleaner-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.setRemoveOnCancelPolicy(true);
         this.clock = clock;
     }
 
@@ -44,32 +73,42 @@ public class CacheCleaner {
         this.clock = clock;
     }
 
-    private CacheCleanerTask getCacheCleanerThread() {
-        if (cacheCleanerThread == null) {
-            var thread = new CacheCleanerTask();
-            thread.setDaemon(true);
-            return thread;
+    /**
+     * Добавление хранилища кэшированных данных в коллекцию сборщика.
+     * Первая очистка хранилища планируется через минимальный срок жизни его значений.
+     *
+     * @param cacheStore хранилище кэшированных данных
+     */
+    public void addCacheStorage(CacheStore cacheStore) {
+        if (cacheStore.getMinExpirePeriod() == Long.MAX_VALUE) {
+            return;
         }
-        return cacheCleanerThread;
+        var cacheStoreItem = new CacheStoreItem(cacheStore);
+        cacheStorages.add(cacheStoreItem);
+        cacheStoreItem.schedule(cacheStore.getMinExpirePeriod());
     }
 
     /**
-     * Добавление хранилища кэшированных данных в коллекцию сборщика.
+     * Добавление хранилища кэшированных данных в коллекцию сборщика, если его там нет.
+     * Используется для хранилищ, разделяемых несколькими прокси-объектами.
      *
      * @param cacheStore хранилище кэшированных данных
      */
-    public void addCacheStorage(CacheStore cacheStore) {
-        cacheStorages.add(new CacheStoreItem(cacheStore));
-        minExpirePeriod = Long.min(minExpirePeriod, cacheStore.getMinExpirePeriod());
+    public synchronized void addCacheStorageIfAbsent(CacheStore cacheStore) {
+        if (!containsCacheStorage(cacheStore)) {
+            addCacheStorage(cacheStore);
+        }
     }
 
     /**
-     * Запуск потока сборщика кэшированных данных.
+     * Удаление хранилища кэшированных данных из коллекции сборщика.
+     *
+     * @param cacheStore хранилище кэшированных данных
      */
-    public void startClean() {
-        if (!cacheCleanerThread.isInterrupted()) {
-            if (!cacheCleanerThread.isAlive()) {
-                cacheCleanerThread.start();
+    public void removeCacheStorage(CacheStore cacheStore) {
+        for (var cacheStoreItem : cacheStorages) {
+            if (cacheStoreItem.cacheStore.get() == cacheStore) {
+                cacheStoreItem.cancel();
             }
         }
     }
@@ -78,73 +117,122 @@ public class CacheCleaner {
      * Освобождение коллекции хранилищ кэшированных данных.
      */
     public void clearCacheStorages() {
-        cacheStorages.clear();
+        cacheStorages.forEach(CacheStoreItem::cancel);
     }
 
     /**
-     * Очистка кэшированных данных с истёкшим сроком жизни.
+     * Проверка наличия хранилища кэшированных данных в коллекции сборщика.
      *
-     * @param cacheStoreItem контейнер хранилища кэшированных данных
+     * @param cacheStore хранилище кэшированных данных
+     * @return true - хранилище есть в коллекции сборщика, иначе false
      */
-    private void cleanCacheStore(CacheStoreItem cacheStoreItem) {
-        var verifyTime = clock.currentTimeMillis();
-        if (verifyTime - cacheStoreItem.lastTimeProcessed >= cacheStoreItem.cacheStore.getMinExpirePeriod()) {
-            cacheStoreItem.cacheStore.cleanExpireCache(verifyTime);
-            cacheStoreItem.lastTimeProcessed = verifyTime;
+    public boolean containsCacheStorage(CacheStore cacheStore) {
+        for (var cacheStoreItem : cacheStorages) {
+            if (cacheStoreItem.cacheStore.get() == cacheStore) {
+                return true;
+            }
         }
-        minExpirePeriod = Long.min(minExpirePeriod, cacheStoreItem.cacheStore.getMinExpirePeriod());
+        return false;
     }
 
     /**
-     * Задача потока сборщика кэшированных данных.
+     * Количество хранилищ кэшированных данных в коллекции сборщика.
      */
-    private final class CacheCleanerTask extends Thread {
+    public int getCacheStorageCount() {
+        return cacheStorages.size();
+    }
 
-        @Override
-        public void run() {
-            try {
-                while (!Thread.currentThread().isInterrupted()) {
-                    // Засекаем старт очистки
-                    var startClearing = clock.currentTimeMillis();
-
-                    cacheStorages.iterator().forEachRemaining(CacheCleaner.this::cleanCacheStore);
-
-                    // определяем период сна, с корректировкой на время затраченное на выполнение очистки
-                    long timeToSleep;
-                    if (minExpirePeriod == Long.MAX_VALUE) {
-                        timeToSleep = DURATION_SLEEP_CACHE_CLEANER_IN_MILLISECONDS;
-                    } else {
-                        timeToSleep = minExpirePeriod;
-                    }
-                    timeToSleep = timeToSleep - (clock.currentTimeMillis() - startClearing);
+    /**
+     * Остановка потоков сборщика кэшированных данных.
+     * Выполняемые очистки прерываются, новые хранилища не принимаются.
+     */
+    public void stopClean() {
+        clearCacheStorages();
+        scheduler.shutdownNow();
+    }
 
-                    // засыпаем
-                    if (timeToSleep > 0) {
-                        TimeUnit.MILLISECONDS.sleep(timeToSleep);
-                    }
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        }
+    public boolean isStopped() {
+        return scheduler.isShutdown();
     }
 
     /**
      * Контейнер для хранения информации о хранилище кэшированных данных.
      */
-    class CacheStoreItem {
+    private final class CacheStoreItem implements Runnable {
         /**
          * Хранилище кэшированных данных.
          */
-        private final CacheStore cacheStore;
+        private final WeakReference<CacheStore> cacheStore;
+        /**
+         * Минимальный срок жизни кэшированных значений в хранилище.
+         */
+        private final long minExpirePeriod;
+        /**
+         * Запланированная задача очистки.
+         */
+        private volatile ScheduledFuture<?> future;
+        /**
+         * Признак удаления хранилища из коллекции сборщика.
+         */
+        private volatile boolean cancelled;
+
+        private CacheStoreItem(CacheStore cacheStore) {
+            this.cacheStore = new WeakReference<>(cacheStore);
+            this.minExpirePeriod = cacheStore.getMinExpirePeriod();
+        }
+
         /**
-         * Время последнего анализа кэшированных данных.
+         * Очистка кэшированных данных с истёкшим сроком жизни и планирование следующей очистки.
+         * Ошибка очистки записывается в журнал, следующая очистка планируется через минимальный срок жизни.
          */
-        private long lastTimeProcessed;
+        @Override
+        public void run() {
+            var store = cacheStore.get();
+            if (store == null || cancelled) {
+                cancel();
+                return;
+            }
+            var delay = minExpirePeriod;
+            try {
+                var verifyTime = clock.currentTimeMillis();
+                if (store.cleanExpireCache(verifyTime)) {
+                    delay = MIN_CLEAN_DELAY_IN_MILLISECONDS;
+                } else {
+                    var nextExpireTime = store.getNextExpireTime();
+                    if (nextExpireTime != Long.MAX_VALUE) {
+                        delay = Long.max(MIN_CLEAN_DELAY_IN_MILLISECONDS,
+                                Long.min(nextExpireTime - verifyTime, minExpirePeriod));
+                    }
+                }
+            } catch (RuntimeException e) {
+                LOGGER.log(System.Logger.Level.WARNING, "Ошибка очистки хранилища кэшированных данных", e);
+            } finally {
+                schedule(delay);
+            }
+        }
 
-        public CacheStoreItem(CacheStore cacheStore) {
-            this.cacheStore = cacheStore;
-            this.lastTimeProcessed = clock.currentTimeMillis();
+        private void schedule(long delay) {
+            if (cancelled) {
+                return;
+            }
+            try {
+                future = scheduler.schedule(this, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                cancel();
+                return;
+            }
+            if (cancelled) {
+                future.cancel(false);
+            }
+        }
+
+        private void cancel() {
+            cancelled = true;
+            cacheStorages.remove(this);
+            var scheduled = future;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
         }
     }
 }
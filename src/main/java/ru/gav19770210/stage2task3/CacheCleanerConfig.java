@@ -9,4 +9,41 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 public @interface CacheCleanerConfig {
     CacheCleanerType cacheCleanerType() default CacheCleanerType.GET_VALUE;
+
+    /**
+     * Тип механизма отслеживания состояния кэшируемого объекта.
+     * <p>При типе <b>VERSION</b> изменение состояния объекта фиксируется только вызовами методов,
+     * помеченных аннотацией <b>@Mutator</b>, изменения полей другими методами не отслеживаются.
+     */
+    CacheStateType cacheStateType() default CacheStateType.FIELDS;
+
+    /**
+     * Максимальное количество значений в кэше для методов, у которых оно не задано в аннотации <b>@Cache</b>.
+     * <p>Если задано 0, то количество значений не ограничено.
+     */
+    long maxEntries() default 0;
+
+    /**
+     * Максимальный суммарный вес значений в кэше для методов, у которых он не задан в аннотации <b>@Cache</b>.
+     * <p>Если задано 0, то суммарный вес значений не ограничен.
+     */
+    long maxWeight() default 0;
+
+    /**
+     * Максимальное количество элементов очереди истечения срока жизни, разбираемых одной очисткой метода.
+     * <p>Оставшиеся значения с истёкшим сроком жизни удаляются следующими очистками,
+     * что распределяет работу по времени вместо одного длительного прохода.
+     * <p>Если задано 0, то очистка разбирает все значения с истёкшим сроком жизни.
+     */
+    int cleanBatchSize() default 0;
+
+    /**
+     * Область хранилища кэшированных данных.
+     * <p>При области <b>CLASS</b> все прокси-объекты класса используют одно хранилище, и результат,
+     * вычисленный для одного объекта, используется для всех объектов с тем же состоянием.
+     * Допускается только при типе отслеживания состояния <b>FIELDS</b>.
+     * Вызов метода с аннотацией <b>@Mutator</b> сбрасывает значения с нулевым сроком жизни для всех объектов класса,
+     * статистика работы кэша также ведётся по классу.
+     */
+    CacheScope scope() default CacheScope.INSTANCE;
 }
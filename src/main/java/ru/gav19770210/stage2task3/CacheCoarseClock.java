@@ -0,0 +1,117 @@
+package ru.gav19770210.stage2task3;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Интерфейс получения текущего времени с заданной точностью.
+ * <p>
+ * Текущее время обновляется фоновым потоком с периодом, равным точности, поэтому его получение
+ * сводится к чтению volatile поля. Время отстаёт от источника не более чем на точность,
+ * значения хранятся в кэше дольше срока жизни не более чем на точность.
+ * <p>
+ * Обновление продолжается до вызова {@link #close()}. Задача обновления хранит слабую ссылку на экземпляр,
+ * поэтому не закрытый экземпляр удаляется сборщиком мусора, а задача обновления после этого отменяется.
+ */
+public final class CacheCoarseClock implements Clockable, AutoCloseable {
+    /**
+     * Планировщик обновления времени всех экземпляров.
+     */
+    private static volatile ScheduledExecutorService scheduler;
+    /**
+     * Источник текущего времени.
+     */
+    private final Clockable source;
+    /**
+     * Запланированное обновление времени.
+     */
+    private final ScheduledFuture<?> future;
+    /**
+     * Текущее время на момент последнего обновления.
+     */
+    private volatile long currentTime;
+
+    /**
+     * @param resolution точность в миллисекундах
+     */
+    public CacheCoarseClock(long resolution) {
+        this(CacheMonotonicClock.INSTANCE, resolution);
+    }
+
+    /**
+     * @param source     источник текущего времени
+     * @param resolution точность в миллисекундах
+     */
+    public CacheCoarseClock(Clockable source, long resolution) {
+        if (resolution < 1) {
+            throw new IllegalArgumentException("Точность времени должна быть больше нуля: " + resolution);
+        }
+        this.source = source;
+        this.currentTime = source.currentTimeMillis();
+        var ticker = new Ticker(this);
+        this.future = getScheduler().scheduleAtFixedRate(ticker, resolution, resolution, TimeUnit.MILLISECONDS);
+        ticker.future = this.future;
+    }
+
+    private void tick() {
+        currentTime = source.currentTimeMillis();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return currentTime;
+    }
+
+    /**
+     * Остановка обновления времени, после неё возвращается время последнего обновления.
+     */
+    @Override
+    public void close() {
+        future.cancel(false);
+    }
+
+    private static ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            synchronized (CacheCoarseClock.class) {
+                if (scheduler == null) {
+                    var executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                        var thread = new Thread(runnable, "cache-coarse-clock");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    executor.setRemoveOnCancelPolicy(true);
+                    scheduler = executor;
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    /**
+     * Задача обновления времени экземпляра.
+     */
+    private static final class Ticker implements Runnable {
+        private final WeakReference<CacheCoarseClock> clock;
+        /**
+         * Запланированное обновление времени, null - ещё не запланировано.
+         */
+        private volatile ScheduledFuture<?> future;
+
+        private Ticker(CacheCoarseClock clock) {
+            this.clock = new WeakReference<>(clock);
+        }
+
+        @Override
+        public void run() {
+            var coarseClock = clock.get();
+            if (coarseClock != null) {
+                coarseClock.tick();
+            } else if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+}
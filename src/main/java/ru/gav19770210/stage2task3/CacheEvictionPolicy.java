@@ -0,0 +1,344 @@
+package ru.gav19770210.stage2task3;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Класс <b>CacheEvictionPolicy</b> реализует ограничение размера кэша метода по алгоритму W-TinyLFU.
+ * <p>
+ * Новые значения попадают в окно (LRU, 1% ёмкости), вытесненные из окна значения становятся кандидатами
+ * в основную область (SLRU из испытательного и защищённого сегментов).
+ * При переполнении кандидат, вытесненный из окна, сравнивается с жертвой основной области - давно использованным
+ * значением испытательного сегмента, а если в нём только кандидаты, то защищённого сегмента.
+ * Кандидат вытесняет жертву только если частота обращений к нему, оцененная {@link CacheFrequencySketch}, выше,
+ * иначе вытесняется сам кандидат. Если кандидатов нет, то вытесняется давно использованное значение.
+ * <p>
+ * Изменения коллекции кэшированных значений и структур политики выполняются под одной блокировкой.
+ * Обращения к значениям учитываются только если блокировка свободна, чтобы не создавать конкуренцию на чтении.
+ * Вытесненные значения передаются получателю после снятия блокировки.
+ */
+final class CacheEvictionPolicy {
+    private static final int WINDOW_PERCENT = 1;
+    private static final int PROTECTED_PERCENT = 80;
+    /**
+     * Начальное ожидаемое количество ключей для оценки частоты,
+     * далее таблица оценки увеличивается по фактическому количеству ключей.
+     */
+    private static final int INITIAL_SKETCH_SIZE = 256;
+    /**
+     * Коллекция кэшированных данных метода.
+     */
+    private final Map<CacheKey, CacheValue> cacheValues;
+    private final Map<CacheKey, Node> nodes = new HashMap<>();
+    /**
+     * Максимальное количество значений, 0 - не ограничено.
+     */
+    private final long maxEntries;
+    /**
+     * Максимальный суммарный вес значений, 0 - не ограничен.
+     */
+    private final long maxWeight;
+    private final CacheWeigher weigher;
+    private final CacheFrequencySketch sketch;
+    /**
+     * Получатель вытесненных значений.
+     */
+    private final BiConsumer<CacheKey, CacheValue> evictionListener;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final NodeList window = new NodeList();
+    private final NodeList probation = new NodeList();
+    private final NodeList protect = new NodeList();
+    private final long windowMaxWeight;
+    private final long protectMaxWeight;
+    private long windowWeight;
+    private long protectWeight;
+    private long totalWeight;
+
+    public CacheEvictionPolicy(Map<CacheKey, CacheValue> cacheValues, long maxEntries, long maxWeight,
+                               CacheWeigher weigher, BiConsumer<CacheKey, CacheValue> evictionListener) {
+        this.cacheValues = cacheValues;
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.evictionListener = evictionListener;
+
+        var capacity = maxWeight > 0 ? maxWeight : maxEntries;
+        this.windowMaxWeight = Long.max(1, capacity * WINDOW_PERCENT / 100);
+        this.protectMaxWeight = (capacity - windowMaxWeight) * PROTECTED_PERCENT / 100;
+        this.sketch = new CacheFrequencySketch(maxEntries > 0 ? Long.min(maxEntries, INITIAL_SKETCH_SIZE)
+                : INITIAL_SKETCH_SIZE);
+    }
+
+    /**
+     * Учёт обращения к кэшированному значению.
+     *
+     * @param cacheKey уникальный ключ, идентифицирующий значение
+     */
+    public void recordAccess(CacheKey cacheKey) {
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            sketch.increment(cacheKey);
+            var node = nodes.get(cacheKey);
+            if (node != null) {
+                onAccess(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Добавлене значения в кэш с вытеснением значений при превышении ограничений.
+     *
+     * @param cacheKey   уникальный ключ, идентифицирующий значение
+     * @param cacheValue объект кэшированного значения
+     */
+    public void putValue(CacheKey cacheKey, CacheValue cacheValue) {
+        List<Node> evictedNodes = new ArrayList<>();
+        lock.lock();
+        try {
+            cacheValues.put(cacheKey, cacheValue);
+            sketch.increment(cacheKey);
+            var weight = maxWeight > 0 ? weigher.weigh(cacheValue.getValue()) : 1;
+            var node = nodes.get(cacheKey);
+            if (node == null) {
+                node = new Node(cacheKey, cacheValue, weight);
+                nodes.put(cacheKey, node);
+                sketch.ensureCapacity(nodes.size());
+                window.addLast(node);
+                windowWeight += weight;
+                totalWeight += weight;
+            } else {
+                node.cacheValue = cacheValue;
+                changeWeight(node, weight);
+                onAccess(node);
+            }
+            evict(evictedNodes);
+        } finally {
+            lock.unlock();
+        }
+        for (var evictedNode : evictedNodes) {
+            evictionListener.accept(evictedNode.cacheKey, evictedNode.cacheValue);
+        }
+    }
+
+    /**
+     * Удаление значения из кэша, если по ключу хранится именно это значение.
+     *
+     * @param cacheKey   уникальный ключ, идентифицирующий значение
+     * @param cacheValue объект кэшированного значения
+     * @return true - значение удалено, иначе false
+     */
+    public boolean removeValue(CacheKey cacheKey, CacheValue cacheValue) {
+        lock.lock();
+        try {
+            if (cacheValues.remove(cacheKey, cacheValue)) {
+                var node = nodes.remove(cacheKey);
+                if (node != null) {
+                    unlink(node);
+                }
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Удаление всех значений из кэша.
+     *
+     * @return количество значений перед удалением
+     */
+    public int clear() {
+        lock.lock();
+        try {
+            var size = cacheValues.size();
+            cacheValues.clear();
+            nodes.clear();
+            window.clear();
+            probation.clear();
+            protect.clear();
+            windowWeight = 0;
+            protectWeight = 0;
+            totalWeight = 0;
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onAccess(Node node) {
+        switch (node.region) {
+            case WINDOW -> window.moveToLast(node);
+            case PROBATION -> {
+                probation.remove(node);
+                node.region = Region.PROTECTED;
+                protect.addLast(node);
+                protectWeight += node.weight;
+                while (protectWeight > protectMaxWeight && protect.first != protect.last) {
+                    var demoted = protect.first;
+                    protect.remove(demoted);
+                    protectWeight -= demoted.weight;
+                    demoted.region = Region.PROBATION;
+                    probation.addLast(demoted);
+                }
+            }
+            case PROTECTED -> protect.moveToLast(node);
+        }
+    }
+
+    private void changeWeight(Node node, int weight) {
+        var delta = weight - node.weight;
+        node.weight = weight;
+        totalWeight += delta;
+        if (node.region == Region.WINDOW) {
+            windowWeight += delta;
+        } else if (node.region == Region.PROTECTED) {
+            protectWeight += delta;
+        }
+    }
+
+    private boolean isOverflow() {
+        return maxWeight > 0 && totalWeight > maxWeight || maxEntries > 0 && nodes.size() > maxEntries;
+    }
+
+    private void evict(List<Node> evictedNodes) {
+        /*
+         * Кандидаты, вытесненные из окна, добавляются в конец испытательного сегмента подряд,
+         * candidate - первый из них, следующие кандидаты доступны по ссылке next.
+         */
+        Node candidate = null;
+        while (windowWeight > windowMaxWeight && window.first != null) {
+            var moved = window.first;
+            window.remove(moved);
+            windowWeight -= moved.weight;
+            moved.region = Region.PROBATION;
+            probation.addLast(moved);
+            if (candidate == null) {
+                candidate = moved;
+            }
+        }
+        while (isOverflow()) {
+            if (candidate == null) {
+                var victim = probation.first != null ? probation.first
+                        : protect.first != null ? protect.first : window.first;
+                if (victim == null) {
+                    break;
+                }
+                evictNode(victim, evictedNodes);
+                continue;
+            }
+            var victim = probation.first != candidate ? probation.first : protect.first;
+            if (victim != null && sketch.frequency(candidate.cacheKey) > sketch.frequency(victim.cacheKey)) {
+                evictNode(victim, evictedNodes);
+            } else {
+                var rejected = candidate;
+                candidate = candidate.next;
+                evictNode(rejected, evictedNodes);
+            }
+        }
+    }
+
+    private void evictNode(Node node, List<Node> evictedNodes) {
+        unlink(node);
+        nodes.remove(node.cacheKey);
+        if (cacheValues.remove(node.cacheKey, node.cacheValue)) {
+            evictedNodes.add(node);
+        }
+    }
+
+    private void unlink(Node node) {
+        switch (node.region) {
+            case WINDOW -> {
+                window.remove(node);
+                windowWeight -= node.weight;
+            }
+            case PROBATION -> probation.remove(node);
+            case PROTECTED -> {
+                protect.remove(node);
+                protectWeight -= node.weight;
+            }
+        }
+        totalWeight -= node.weight;
+    }
+
+    /**
+     * Область размещения значения.
+     */
+    private enum Region {
+        WINDOW,     // окно новых значений
+        PROBATION,  // испытательный сегмент основной области
+        PROTECTED   // защищённый сегмент основной области
+    }
+
+    /**
+     * Элемент списков политики вытеснения.
+     */
+    private static final class Node {
+        private final CacheKey cacheKey;
+        private CacheValue cacheValue;
+        private int weight;
+        private Region region = Region.WINDOW;
+        private Node prev;
+        private Node next;
+
+        private Node(CacheKey cacheKey, CacheValue cacheValue, int weight) {
+            this.cacheKey = cacheKey;
+            this.cacheValue = cacheValue;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Двусвязный список элементов в порядке от давно использованных к недавно использованным.
+     */
+    private static final class NodeList {
+        private Node first;
+        private Node last;
+
+        private void addLast(Node node) {
+            node.prev = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+        }
+
+        private void remove(Node node) {
+            if (node.prev == null) {
+                first = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                last = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        private void moveToLast(Node node) {
+            if (node != last) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        private void clear() {
+            first = null;
+            last = null;
+        }
+    }
+}
@@ -1,21 +1,37 @@
 package ru.gav19770210.stage2task3;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.Map;
 
 /**
  * Класс <b>CacheFactory</b> реализует методы создания прокси-объекта для исходного объекта.
  * Прокси-объект создаётся если исходный объект имеет методы с аннотацией <b>@Cache</b>,
  * иначе возвращается исходный объект.
+ * <p>
+ * Прокси-объект реализует {@link CacheHandle} для удаления своих значений и закрытия.
+ * <p>
+ * Статистика работы кэша прокси-объекта доступна через методы <b>getStats</b>, <b>getMethodStats</b>
+ * и через JMX после регистрации методом <b>registerMBean</b>.
  */
 public final class CacheFactory {
+    /**
+     * Домен имён JMX статистики работы кэша.
+     */
+    private static final String MBEAN_DOMAIN = "ru.gav19770210.stage2task3";
+
     /**
      * Создание прокси-объекта для исходного объекта.
+     * Текущее время получается через {@link CacheMonotonicClock}.
      *
      * @param cachedObject исходный объект
      * @return прокси-объект
      */
     public static Object makeCacheable(Object cachedObject) {
-        return makeCacheable(cachedObject, System::currentTimeMillis);
+        return makeCacheable(cachedObject, CacheMonotonicClock.INSTANCE);
     }
 
     /**
@@ -26,10 +42,45 @@ public final class CacheFactory {
      * @return прокси-объект
      */
     public static Object makeCacheable(Object cachedObject, Clockable clock) {
-        if (CacheUtils.objectIsCacheable(cachedObject)) {
-            return Proxy.newProxyInstance(cachedObject.getClass().getClassLoader(),
-                    cachedObject.getClass().getInterfaces(),
-                    new CacheInvocationHandler(cachedObject, clock));
+        var metadata = CacheClassMetadata.forClass(cachedObject.getClass());
+        if (metadata.isCacheable()) {
+            var handler = new CacheInvocationHandler(cachedObject, clock);
+            var proxy = Proxy.newProxyInstance(cachedObject.getClass().getClassLoader(),
+                    metadata.getProxyInterfaces(), handler);
+            handler.registerProxy(proxy);
+            return proxy;
+        } else {
+            return cachedObject;
+        }
+    }
+
+    /**
+     * Создание прокси-объекта сгенерированного класса для исходного объекта.
+     * <p>
+     * В отличие от прокси-объекта <b>java.lang.reflect.Proxy</b>, класс прокси-объекта генерируется
+     * один раз для класса исходного объекта и вызывает обработчики методов напрямую, без поиска метода.
+     * Текущее время получается через {@link CacheMonotonicClock}.
+     *
+     * @param cachedObject исходный объект
+     * @return прокси-объект
+     */
+    public static Object makeGeneratedCacheable(Object cachedObject) {
+        return makeGeneratedCacheable(cachedObject, CacheMonotonicClock.INSTANCE);
+    }
+
+    /**
+     * Создание прокси-объекта сгенерированного класса для исходного объекта.
+     *
+     * @param cachedObject исходный объект
+     * @param clock        интерфейс получения текущего времени
+     * @return прокси-объект
+     */
+    public static Object makeGeneratedCacheable(Object cachedObject, Clockable clock) {
+        if (CacheClassMetadata.forClass(cachedObject.getClass()).isCacheable()) {
+            var handler = new CacheInvocationHandler(cachedObject, clock);
+            var proxy = CacheProxyGenerator.newProxyInstance(cachedObject, handler);
+            handler.registerProxy(proxy);
+            return proxy;
         } else {
             return cachedObject;
         }
@@ -43,4 +94,120 @@ public final class CacheFactory {
             CacheInvocationHandler.getCacheCleaner().clearCacheStorages();
         }
     }
+
+    /**
+     * Если сборщик кэшированных данных создан, то остановка его потоков.
+     * Сборщик будет создан заново при создании следующего прокси-объекта с фоновой очисткой.
+     */
+    public static void stopCacheCleaner() {
+        if (CacheInvocationHandler.getCacheCleaner() != null) {
+            CacheInvocationHandler.getCacheCleaner().stopClean();
+        }
+    }
+
+    /**
+     * Подключение общего хранилища кэшированных данных второго уровня
+     * для методов с параметром <b>shared</b> аннотации <b>@Cache</b>.
+     *
+     * @param sharedStore общее хранилище, null - отключение общего хранилища
+     */
+    public static void setSharedStore(CacheSharedStore sharedStore) {
+        CacheSharedTier.setSharedStore(sharedStore);
+    }
+
+    /**
+     * Запись снимка кэшированных данных прокси-объекта в файл, заданный аннотацией <b>@CachePersistence</b>.
+     *
+     * @param proxy прокси-объект
+     */
+    public static void saveSnapshot(Object proxy) {
+        var handler = getInvocationHandler(proxy);
+        if (handler.getSnapshotFile() == null) {
+            throw new IllegalArgumentException("Для прокси-объекта не задана аннотация @CachePersistence");
+        }
+        handler.getSnapshotFile().save(handler.getCacheStore());
+    }
+
+    /**
+     * Получение статистики работы кэша прокси-объекта по всем методам.
+     *
+     * @param proxy прокси-объект
+     * @return снимок статистики
+     */
+    public static CacheStats getStats(Object proxy) {
+        return getInvocationHandler(proxy).getCacheStore().getStats();
+    }
+
+    /**
+     * Получение статистики работы кэша прокси-объекта в разрезе кэшируемых методов.
+     *
+     * @param proxy прокси-объект
+     * @return снимки статистики по методам
+     */
+    public static Map<Method, CacheStats> getMethodStats(Object proxy) {
+        return getInvocationHandler(proxy).getCacheStore().getMethodStats();
+    }
+
+    /**
+     * Регистрация статистики работы кэша прокси-объекта и его методов в JMX.
+     * <p>
+     * Для прокси-объекта регистрируется объект с именем <b>type=CacheStats,name=&lt;name&gt;</b>,
+     * для каждого кэшируемого метода - с дополнительным ключом <b>method=&lt;имя метода&gt;</b>.
+     *
+     * @param proxy прокси-объект
+     * @param name  имя прокси-объекта в JMX
+     * @return имя зарегистрированного объекта статистики прокси-объекта
+     */
+    public static ObjectName registerMBean(Object proxy, String name) {
+        var cacheStore = getInvocationHandler(proxy).getCacheStore();
+        var server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            var objectName = new ObjectName(MBEAN_DOMAIN + ":type=CacheStats,name=" + ObjectName.quote(name));
+            server.registerMBean(new CacheStatsMonitor(cacheStore::getStats), objectName);
+            for (var method : cacheStore.getMethodStats().keySet()) {
+                var methodName = new ObjectName(objectName + ",method=" + ObjectName.quote(method.getName()));
+                if (!server.isRegistered(methodName)) {
+                    var methodStore = cacheStore.getMethodStore(method);
+                    server.registerMBean(new CacheStatsMonitor(methodStore::getStats), methodName);
+                }
+            }
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Не удалось зарегистрировать статистику кэша " + name, e);
+        }
+    }
+
+    /**
+     * Отмена регистрации в JMX статистики работы кэша прокси-объекта и его методов.
+     *
+     * @param objectName имя объекта статистики прокси-объекта, полученное при регистрации
+     */
+    public static void unregisterMBean(ObjectName objectName) {
+        var server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (var name : server.queryNames(new ObjectName(objectName + ",*"), null)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Не удалось отменить регистрацию статистики кэша " + objectName, e);
+        }
+    }
+
+    /**
+     * Получение обработчика вызовов прокси-объекта.
+     *
+     * @param proxy прокси-объект, созданный методом <b>makeCacheable</b> или <b>makeGeneratedCacheable</b>
+     * @return обработчик вызовов
+     */
+    private static CacheInvocationHandler getInvocationHandler(Object proxy) {
+        if (Proxy.isProxyClass(proxy.getClass())
+                && Proxy.getInvocationHandler(proxy) instanceof CacheInvocationHandler handler) {
+            return handler;
+        }
+        var handler = CacheProxyGenerator.getInvocationHandler(proxy);
+        if (handler == null) {
+            throw new IllegalArgumentException("Объект не является кэширующим прокси-объектом: " + proxy.getClass());
+        }
+        return handler;
+    }
 }
@@ -0,0 +1,127 @@
+package ru.gav19770210.stage2task3;
+
+/**
+ * Класс <b>CacheFrequencySketch</b> реализует вероятностную оценку частоты обращений к ключам (Count-Min Sketch).
+ * <p>
+ * Каждый ключ учитывается в четырёх 4-битных счётчиках, частота оценивается минимальным из них.
+ * После заданного количества обращений все счётчики уменьшаются вдвое,
+ * чтобы оценка отражала недавнюю популярность ключей.
+ * <p>
+ * Размер таблицы счётчиков задаётся по ожидаемому количеству ключей и увеличивается через
+ * {@link #ensureCapacity(long)} по мере роста фактического количества ключей.
+ */
+final class CacheFrequencySketch {
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    /**
+     * Таблица счётчиков, в каждом элементе хранится 16 счётчиков по 4 бита.
+     */
+    private long[] table;
+    private int tableMask;
+    /**
+     * Количество обращений, после которого счётчики уменьшаются вдвое.
+     */
+    private int sampleSize;
+    private int size;
+
+    /**
+     * @param maximumSize ожидаемое максимальное количество ключей
+     */
+    public CacheFrequencySketch(long maximumSize) {
+        allocate(maximumSize);
+    }
+
+    /**
+     * Увеличение таблицы счётчиков, если она меньше заданного количества ключей.
+     * При увеличении накопленные частоты сбрасываются.
+     *
+     * @param maximumSize фактическое количество ключей
+     */
+    public void ensureCapacity(long maximumSize) {
+        if (maximumSize > table.length && table.length < MAXIMUM_CAPACITY) {
+            allocate(maximumSize);
+            size = 0;
+        }
+    }
+
+    /**
+     * @return количество элементов таблицы счётчиков
+     */
+    public int capacity() {
+        return table.length;
+    }
+
+    private void allocate(long maximumSize) {
+        int capacity = (int) Long.min(Long.max(maximumSize, 16), MAXIMUM_CAPACITY);
+        capacity = Integer.highestOneBit(capacity - 1) << 1;
+        this.table = new long[capacity];
+        this.tableMask = capacity - 1;
+        this.sampleSize = capacity > Integer.MAX_VALUE / 10 ? Integer.MAX_VALUE : 10 * capacity;
+    }
+
+    /**
+     * Оценка частоты обращений к ключу.
+     *
+     * @param key ключ
+     * @return частота от 0 до 15
+     */
+    public int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = 15;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Учёт обращения к ключу.
+     *
+     * @param key ключ
+     */
+    public void increment(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xfL << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = size / 2;
+    }
+
+    private int indexOf(int hash, int depth) {
+        long result = (hash + SEEDS[depth]) * SEEDS[depth];
+        result += result >>> 32;
+        return (int) result & tableMask;
+    }
+
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+}
@@ -0,0 +1,31 @@
+package ru.gav19770210.stage2task3;
+
+/**
+ * Интерфейс управления кэшем прокси-объекта.
+ * <p>
+ * Реализуется всеми прокси-объектами, созданными {@link CacheFactory}, если исходный объект
+ * сам не реализует этот интерфейс. Методы интерфейса, объявленные также в интерфейсах исходного объекта,
+ * передаются исходному объекту.
+ */
+public interface CacheHandle extends AutoCloseable {
+    /**
+     * Удаление всех кэшированных значений прокси-объекта.
+     */
+    void invalidateAll();
+
+    /**
+     * Удаление кэшированных значений методов прокси-объекта с заданным именем.
+     *
+     * @param methodName имя кэшируемого метода
+     */
+    void invalidate(String methodName);
+
+    /**
+     * Освобождение хранилища кэшированных данных прокси-объекта и снятие его со сборщика
+     * кэшированных данных и периодической записи снимка.
+     * После закрытия вызовы методов передаются исходному объекту без кэширования.
+     * Повторный вызов не выполняет действий.
+     */
+    @Override
+    void close();
+}
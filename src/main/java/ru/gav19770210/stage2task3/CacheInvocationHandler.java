@@ -1,10 +1,29 @@
 package ru.gav19770210.stage2task3;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.Cleaner;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * Класс <b>CacheInvocationHandler</b> перехватывает вызовы методов интерфейса прокси-объекта.
@@ -15,21 +34,76 @@ import java.util.Objects;
  * Если срок жизни не задан, или задан нулевым,
  * то срок жизни определяется фиксацией вызовов интерфейсных методов, помеченных аннотацией <b>@Mutator</b>.
  * Остальные интерфейсные методы перевызываются на исходном объекте без изменения логики работы.
+ * <p>
+ * Если на проксируемом объекте задан тип отслеживания состояния <b>VERSION</b>,
+ * то вместо значений полей в ключ кэша включается номер версии состояния метода,
+ * который увеличивается после каждого вызова метода с аннотацией <b>@Mutator</b>, влияющего на этот метод.
+ * <p>
+ * Вызов метода с аннотацией <b>@Mutator</b> сбрасывает только значения методов, зависящих от изменяемых полей:
+ * поля задаются параметрами <b>fields</b> аннотации <b>@Mutator</b> и <b>dependsOn</b> аннотации <b>@Cache</b>.
+ * <p>
+ * Если в аннотации <b>@Cache</b> заданы параметры <b>refreshAfter</b> или <b>staleWhileRevalidate</b>,
+ * то обновление значения выполняется в фоновом потоке, а вызывающему возвращается текущее значение.
+ * <p>
+ * Для методов, возвращающих {@link CompletableFuture} или {@link CompletionStage}, в кэш помещается
+ * незавершённый результат, который разделяют все вызывающие, каждому возвращается его копия.
+ * Результат, завершённый с ошибкой, удаляется из кэша, срок жизни успешного результата отсчитывается от завершения.
+ * <p>
+ * Для методов с аннотацией <b>@BulkCache</b> значения кэшируются по элементам параметра-коллекции.
+ * <p>
+ * Параметры вызова, включаемые в ключ кэша, задаются параметрами <b>keyParameters</b> и <b>keyExtractor</b>
+ * аннотации <b>@Cache</b>, поля объекта - параметром <b>dependsOn</b>.
+ * <p>
+ * Для методов с параметром <b>shared</b> аннотации <b>@Cache</b> при промахе локального кэша значение
+ * ищется в общем хранилище {@link CacheSharedStore}, вычисленное значение помещается в него.
+ * <p>
+ * Настройки методов и аннотаций берутся из {@link CacheClassMetadata} и разделяются всеми обработчиками класса,
+ * обработчик хранит только состояние своего прокси-объекта.
+ * <p>
+ * Вызовы методов {@link CacheHandle} управляют хранилищем прокси-объекта. Если прокси-объект не был закрыт
+ * и стал недостижим, то его хранилище снимается со сборщика кэшированных данных и периодической записи снимка
+ * через {@link Cleaner}.
  */
 final class CacheInvocationHandler implements InvocationHandler {
     /**
      * Сборщик кэшированных данных с истёкшим сроком жизни.
      */
-    private static CacheCleaner cacheCleaner;
+    private static volatile CacheCleaner cacheCleaner;
+    /**
+     * Исполнитель фоновых обновлений кэшированных значений.
+     */
+    private static volatile ExecutorService refreshExecutor;
+    /**
+     * Отслеживание недостижимых прокси-объектов для освобождения их хранилищ.
+     */
+    private static final Cleaner PROXY_CLEANER = Cleaner.create();
     /**
      * Проксируемый объект.
      */
     private final Object cachedObject;
     /**
-     * Коллекция для хранения соответствия методов прокси-объекта и проксируемого объекта,
-     * чтобы каждый раз не выполнять поиск их соответствия через java.lang.reflect.
+     * Неизменяемая коллекция соответствия методов прокси-объекта и проксируемого объекта,
+     * заполняется один раз для класса, чтобы при вызовах не выполнять поиск их соответствия
+     * через java.lang.reflect и допускать одновременные вызовы без блокировок.
      */
     private final Map<Method, CachedObjectMethod> cachedObjectMethods;
+    /**
+     * Номера версий состояния кэшируемых методов, используются при типе отслеживания <b>VERSION</b>,
+     * иначе null.
+     */
+    private final AtomicLongArray stateVersions;
+    /**
+     * Хранилища кэшированных данных методов по индексам кэшируемых методов,
+     * чтобы при вызове не выполнять поиск хранилища по методу.
+     */
+    private final CacheMethodStore[] methodStores;
+    /**
+     * Последние ключи кэшируемых методов без параметров по индексам кэшируемых методов.
+     * Ключ используется повторно, пока не изменилось состояние объекта, поэтому попадание в кэш
+     * для таких методов не создаёт новых объектов. Запись выполняется без синхронизации:
+     * ключ неизменяем, а потерянная запись приводит лишь к повторному формированию ключа.
+     */
+    private final CacheKey[] lastKeys;
     /**
      * Хранилище кэшированных данных.
      */
@@ -42,6 +116,27 @@ final class CacheInvocationHandler implements InvocationHandler {
      * Тип механизма очистки кэшированных данных.
      */
     private final CacheCleanerType cachedObjectCleanerType;
+    /**
+     * Тип механизма отслеживания состояния проксируемого объекта.
+     */
+    private final CacheStateType cachedObjectStateType;
+    /**
+     * Файл снимка кэшированных данных, null - сохранение в файл не настроено.
+     */
+    private final CacheSnapshotFile snapshotFile;
+    /**
+     * Область хранилища кэшированных данных.
+     */
+    private final CacheScope cacheScope;
+    /**
+     * Признак закрытия прокси-объекта через {@link CacheHandle#close()}.
+     */
+    private volatile boolean closed;
+    /**
+     * Действие освобождения хранилища, выполняемое при закрытии или недостижимости прокси-объекта,
+     * null - прокси-объект не зарегистрирован.
+     */
+    private volatile Cleaner.Cleanable cleanable;
 
     /**
      * В конструкторе выполняется первоначальное создание сборщика кэшированных данных если,
@@ -52,19 +147,125 @@ final class CacheInvocationHandler implements InvocationHandler {
      * @param clock     интерфейс получения текущего времени
      */
     public CacheInvocationHandler(Object cachedObject, Clockable clock) {
+        var metadata = CacheClassMetadata.forClass(cachedObject.getClass());
         this.cachedObject = cachedObject;
-        this.cachedObjectMethods = new HashMap<>();
-        this.cacheStore = new CacheStore(cachedObject);
+        this.cachedObjectMethods = metadata.getCachedObjectMethods();
         this.clock = clock;
-        this.cachedObjectCleanerType = CacheUtils.getCacheCleanerType(cachedObject);
+        this.cachedObjectCleanerType = metadata.getCleanerType();
+        this.cachedObjectStateType = metadata.getStateType();
+        this.stateVersions = cachedObjectStateType == CacheStateType.VERSION
+                ? new AtomicLongArray(metadata.getCacheMethodCount())
+                : null;
+        this.lastKeys = new CacheKey[metadata.getCacheMethodCount()];
+        this.cacheScope = metadata.getScope();
+        if (cacheScope == CacheScope.CLASS) {
+            if (cachedObjectStateType != CacheStateType.FIELDS) {
+                throw new IllegalArgumentException("Область хранилища CLASS допускается только для типа отслеживания "
+                        + "состояния FIELDS: " + cachedObject.getClass().getName());
+            }
+            this.cacheStore = CacheStore.forClass(cachedObject.getClass());
+        } else {
+            this.cacheStore = new CacheStore(cachedObject);
+        }
+        this.methodStores = new CacheMethodStore[metadata.getCacheMethodCount()];
+        for (var cachedObjectMethod : cachedObjectMethods.values()) {
+            if (cachedObjectMethod.isCache()) {
+                methodStores[cachedObjectMethod.getCacheIndex()] =
+                        cacheStore.getMethodStore(cachedObjectMethod.getMethod());
+            }
+        }
+        this.snapshotFile = createSnapshotFile(cachedObject, metadata.getPersistence(), cacheScope,
+                cacheStore, clock);
 
-        if (this.cachedObjectCleanerType == CacheCleanerType.BACKGROUND
-                && CacheUtils.objectIsCacheableWithExpirePeriod(cachedObject)) {
-            if (cacheCleaner == null) {
-                cacheCleaner = new CacheCleaner(this.clock);
+        if (this.cachedObjectCleanerType == CacheCleanerType.BACKGROUND && metadata.isCacheableWithExpirePeriod()) {
+            if (cacheScope == CacheScope.CLASS) {
+                getOrCreateCacheCleaner(this.clock).addCacheStorageIfAbsent(this.cacheStore);
+            } else {
+                getOrCreateCacheCleaner(this.clock).addCacheStorage(this.cacheStore);
             }
-            cacheCleaner.addCacheStorage(this.cacheStore);
-            cacheCleaner.startClean();
+        }
+    }
+
+    public CacheStore getCacheStore() {
+        return cacheStore;
+    }
+
+    public CacheSnapshotFile getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    /**
+     * Если на проксируемом объекте задана аннотация <b>@CachePersistence</b>, то загрузка снимка
+     * кэшированных данных из файла и планирование периодической записи снимка.
+     * Файл задаётся на класс, поэтому сохраняется общее хранилище области <b>CLASS</b>,
+     * загрузка и планирование выполняются один раз при первой инициализации хранилища.
+     *
+     * @return файл снимка кэшированных данных, null - сохранение в файл не настроено
+     */
+    private static CacheSnapshotFile createSnapshotFile(Object cachedObject, CachePersistence persistence,
+                                                        CacheScope scope, CacheStore cacheStore,
+                                                        Clockable clock) {
+        if (Objects.isNull(persistence)) {
+            return null;
+        }
+        if (scope != CacheScope.CLASS) {
+            throw new IllegalArgumentException("Сохранение кэша в файл поддерживается только для области хранилища "
+                    + "CLASS: " + cachedObject.getClass().getName());
+        }
+        var snapshotFile = new CacheSnapshotFile(Path.of(persistence.file()),
+                CacheUtils.createInstance(persistence.serializer()), clock);
+        if (cacheStore.initialize()) {
+            snapshotFile.load(cacheStore);
+            if (persistence.period() > 0) {
+                snapshotFile.schedule(cacheStore, persistence.period());
+            }
+        }
+        return snapshotFile;
+    }
+
+    /**
+     * Регистрация прокси-объекта для освобождения хранилища, когда прокси-объект станет недостижим.
+     * Действие освобождения не ссылается на прокси-объект и обработчик.
+     * Хранилище области <b>CLASS</b> используется другими прокси-объектами класса и не освобождается.
+     *
+     * @param proxy прокси-объект обработчика
+     */
+    public void registerProxy(Object proxy) {
+        if (cacheScope == CacheScope.INSTANCE) {
+            cleanable = PROXY_CLEANER.register(proxy, new CacheStoreRelease(cacheStore, snapshotFile));
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Удаление значений кэшируемых методов с заданным именем.
+     *
+     * @param methodName имя кэшируемого метода, null - все методы
+     */
+    public void invalidate(String methodName) {
+        if (!cacheStore.invalidate(methodName) && methodName != null) {
+            throw new IllegalArgumentException("Не найден кэшируемый метод " + methodName);
+        }
+    }
+
+    /**
+     * Закрытие прокси-объекта: хранилище снимается со сборщика кэшированных данных и периодической записи снимка,
+     * значения хранилища прокси-объекта удаляются. Хранилище области <b>CLASS</b> не очищается,
+     * так как используется другими прокси-объектами класса.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (cleanable != null) {
+            cleanable.clean();
+        }
+        if (cacheScope == CacheScope.INSTANCE) {
+            cacheStore.invalidate(null);
         }
     }
 
@@ -72,42 +273,155 @@ final class CacheInvocationHandler implements InvocationHandler {
         return cacheCleaner;
     }
 
+    private static synchronized CacheCleaner getOrCreateCacheCleaner(Clockable clock) {
+        if (cacheCleaner == null || cacheCleaner.isStopped()) {
+            cacheCleaner = new CacheCleaner(clock);
+        }
+        return cacheCleaner;
+    }
+
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        CachedObjectMethod cachedObjectMethod = getCachedObjectMethod(method);
+        var cachedObjectMethod = cachedObjectMethods.get(method);
+        if (cachedObjectMethod == null) {
+            return invokeHandle(method, args);
+        }
+        return invoke(cachedObjectMethod, args);
+    }
+
+    /**
+     * Выполнение вызова метода {@link CacheHandle}.
+     *
+     * @param method метод прокси-объекта, не найденный среди методов проксируемого объекта
+     * @param args   параметры вызова метода
+     * @return null
+     */
+    private Object invokeHandle(Method method, Object[] args) {
+        if (method.getDeclaringClass() == CacheHandle.class || method.getDeclaringClass() == AutoCloseable.class) {
+            switch (method.getName()) {
+                case "invalidateAll" -> invalidate(null);
+                case "invalidate" -> invalidate((String) args[0]);
+                case "close" -> close();
+                default -> {
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Получение обработчика вызовов одного метода прокси-объекта.
+     * <p>
+     * Обработчик не выполняет поиск метода проксируемого объекта при вызове,
+     * используется в прокси-объектах, сгенерированных {@link CacheProxyGenerator}.
+     * Как и в <b>java.lang.reflect.Proxy</b>, проверяемое исключение, не объявленное методом прокси-объекта,
+     * оборачивается в {@link UndeclaredThrowableException}.
+     *
+     * @param method метод прокси-объекта
+     * @return обработчик вызовов метода
+     */
+    public CacheMethodHandler getMethodHandler(Method method) {
+        var cachedObjectMethod = cachedObjectMethods.get(method);
+        CacheMethodHandler methodHandler = cachedObjectMethod == null
+                ? args -> invokeHandle(method, args)
+                : args -> invoke(cachedObjectMethod, args);
+        var exceptionTypes = method.getExceptionTypes();
+        return args -> {
+            try {
+                return methodHandler.invoke(args);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                for (var exceptionType : exceptionTypes) {
+                    if (exceptionType.isInstance(e)) {
+                        throw e;
+                    }
+                }
+                throw new UndeclaredThrowableException(e);
+            }
+        };
+    }
+
+    /**
+     * Выполнение вызова метода проксируемого объекта с учётом аннотаций метода.
+     *
+     * @param cachedObjectMethod метод проксируемого объекта, null - метод не найден
+     * @param args               параметры вызова метода
+     * @return результат вызова метода
+     */
+    private Object invoke(CachedObjectMethod cachedObjectMethod, Object[] args) throws Throwable {
         if (cachedObjectMethod != null) {
             Object result;
+            if (closed) {
+                return cachedObjectMethod.invoke(cachedObject, args);
+            }
             if (cachedObjectMethod.isCache()) {
-                var cacheKey = new CacheKey(args, cachedObject);
-                var cacheValue = cacheStore.getValue(cachedObjectMethod.getMethod(), cacheKey);
+                var methodStore = methodStores[cachedObjectMethod.getCacheIndex()];
+                /*
+                 * Текущее время получается один раз за вызов для проверки срока жизни, отметки обращения
+                 * и очистки кэша. Время помещения загруженного значения в кэш получается после загрузки.
+                 */
+                var currentTime = clock.currentTimeMillis();
+                if (cachedObjectMethod.isBulk()) {
+                    result = invokeBulk(cachedObjectMethod, methodStore, args, currentTime);
+                    if (this.cachedObjectCleanerType == CacheCleanerType.GET_VALUE) {
+                        methodStore.cleanExpireCache(currentTime);
+                    }
+                    return result;
+                }
+                var cacheKey = createCacheKey(cachedObjectMethod, args);
+                var cacheValue = methodStore.getValue(cacheKey, currentTime);
 
-                if (Objects.nonNull(cacheValue)) {
-                    if (cacheValue.isExpire(clock.currentTimeMillis())) {
-                        result = method.invoke(cachedObject, args);
-                        cacheValue.setValue(result);
+                if (Objects.nonNull(cacheValue) && !cacheValue.isExpire(currentTime)) {
+                    methodStore.getMetrics().recordHit();
+                    result = cacheValue.getValue();
+                    if (cacheValue.isStale(currentTime)) {
+                        refreshValue(args, cachedObjectMethod, methodStore, cacheKey);
                     } else {
-                        result = cacheValue.getValue();
+                        cacheValue.setCacheTime(currentTime);
+                        if (cacheValue.isRefreshRequired(currentTime, cachedObjectMethod.getRefreshAfter())) {
+                            refreshValue(args, cachedObjectMethod, methodStore, cacheKey);
+                        }
                     }
-                    cacheValue.setCacheTime(clock.currentTimeMillis());
                 } else {
-                    result = method.invoke(cachedObject, args);
-                    cacheValue = new CacheValue(result, clock.currentTimeMillis(), cachedObjectMethod.getExpirePeriod());
-                    cacheStore.putValue(cachedObjectMethod.getMethod(), cacheKey, cacheValue);
+                    methodStore.getMetrics().recordMiss();
+                    result = methodStore.loadValue(cacheKey,
+                            () -> loadValue(args, cachedObjectMethod, methodStore, cacheKey),
+                            cachedObjectMethod.getLoadTimeout());
+                }
+                if (cachedObjectMethod.isAsync() && result instanceof CompletableFuture<?> future) {
+                    result = future.copy();
                 }
                 /*
                  * Очистка кэша по текущему методу
                  */
                 if (this.cachedObjectCleanerType == CacheCleanerType.GET_VALUE) {
-                    cacheStore.cleanExpireCacheForMethod(cachedObjectMethod.getMethod(), clock.currentTimeMillis());
+                    methodStore.cleanExpireCache(currentTime);
                 }
             } else {
                 /*
                  * Очистка кэша по методам с не заданным временем жизни т.е. равным 0
                  */
                 if (cachedObjectMethod.isMutator()) {
-                    cacheStore.cleanExpireCache(0);
+                    var affectedMethods = cachedObjectMethod.getAffectedMethods();
+                    for (var affectedMethod : affectedMethods) {
+                        methodStores[affectedMethod.getCacheIndex()].cleanExpireCache(0);
+                        if (affectedMethod.getSharedTier() != null && affectedMethod.getExpirePeriod() == 0) {
+                            affectedMethod.getSharedTier().invalidate();
+                        }
+                    }
+                    try {
+                        result = cachedObjectMethod.invoke(cachedObject, args);
+                    } finally {
+                        if (stateVersions != null) {
+                            for (var affectedMethod : affectedMethods) {
+                                stateVersions.incrementAndGet(affectedMethod.getCacheIndex());
+                            }
+                        }
+                    }
+                } else {
+                    result = cachedObjectMethod.invoke(cachedObject, args);
                 }
-                result = method.invoke(cachedObject, args);
             }
             return result;
         } else {
@@ -116,47 +430,469 @@ final class CacheInvocationHandler implements InvocationHandler {
     }
 
     /**
-     * Функция <b>getCachedObjectMethod</b> по методу прокси-объекта,
-     * возвращает соответствующий ему метод проксируемого объекта.
+     * Выполнение вызова метода с пакетным кэшированием.
      * <p>
-     * Результат поиска сохраняется в коллекцию <b>cachedObjectMethods</b>.
+     * Для каждого элемента параметра-коллекции формируется отдельный ключ, в котором коллекция заменена элементом.
+     * Метод проксируемого объекта вызывается только для элементов без значений в кэше.
      *
-     * @param method метод прокси-объекта
+     * @param cachedObjectMethod метод проксируемого объекта
+     * @param methodStore        хранилище кэшированных данных метода
+     * @param args               параметры вызова метода
+     * @param currentTime        текущее время вызова
+     * @return объединённый результат в порядке элементов параметра-коллекции
      */
-    private CachedObjectMethod getCachedObjectMethod(Method method) {
-        CachedObjectMethod cachedObjectMethod = null;
+    private Object invokeBulk(CachedObjectMethod cachedObjectMethod, CacheMethodStore methodStore,
+                              Object[] args, long currentTime) throws Throwable {
+        var parameter = cachedObjectMethod.getBulkParameter();
+        var elements = (Collection<?>) args[parameter];
+        Map<Object, Object> cachedValues = new HashMap<>();
+        Map<Object, CacheKey> missingKeys = new LinkedHashMap<>();
+        for (var element : elements) {
+            var elementArgs = args.clone();
+            elementArgs[parameter] = element;
+            var cacheKey = createCacheKey(cachedObjectMethod, elementArgs);
+            var cacheValue = methodStore.getValue(cacheKey, currentTime);
+            if (Objects.nonNull(cacheValue) && !cacheValue.isExpire(currentTime)) {
+                methodStore.getMetrics().recordHit();
+                cacheValue.setCacheTime(currentTime);
+                cachedValues.put(element, cacheValue.getValue());
+            } else {
+                methodStore.getMetrics().recordMiss();
+                missingKeys.put(element, cacheKey);
+            }
+        }
+        Map<?, ?> loadedValues = Collections.emptyMap();
+        if (!missingKeys.isEmpty()) {
+            var missingArgs = args.clone();
+            missingArgs[parameter] = cachedObjectMethod.getBulkParameterType() == Set.class
+                    ? new LinkedHashSet<>(missingKeys.keySet())
+                    : new ArrayList<>(missingKeys.keySet());
+            var loaded = (Map<?, ?>) methodStore.load(() -> cachedObjectMethod.invoke(cachedObject, missingArgs));
+            if (loaded != null) {
+                loadedValues = loaded;
+                loaded.forEach((element, value) -> {
+                    var cacheKey = missingKeys.get(element);
+                    if (cacheKey != null) {
+                        putValue(cachedObjectMethod, methodStore, cacheKey, value);
+                    }
+                });
+            }
+        }
+        Map<Object, Object> result = new LinkedHashMap<>();
+        for (var element : elements) {
+            if (cachedValues.containsKey(element)) {
+                result.put(element, cachedValues.get(element));
+            } else if (loadedValues.containsKey(element)) {
+                result.put(element, loadedValues.get(element));
+            }
+        }
+        return result;
+    }
 
-        if (cachedObjectMethods.containsKey(method)) {
-            cachedObjectMethod = cachedObjectMethods.get(method);
-        } else {
+    /**
+     * Вызов метода проксируемого объекта и помещение результата в кэш.
+     * <p>
+     * Выполняется одним потоком для ключа, остальные потоки ожидают результат его вызова.
+     * Если пока поток ожидал своей очереди значение уже было загружено, то вызов метода не выполняется.
+     *
+     * @param args               параметры вызова метода
+     * @param cachedObjectMethod метод проксируемого объекта
+     * @param methodStore        хранилище кэшированных данных метода
+     * @param cacheKey           уникальный ключ, идентифицирующий значение
+     * @return результат вызова метода
+     */
+    private Object loadValue(Object[] args, CachedObjectMethod cachedObjectMethod, CacheMethodStore methodStore,
+                             CacheKey cacheKey) throws Throwable {
+        var currentTime = clock.currentTimeMillis();
+        var cacheValue = methodStore.getValue(cacheKey, currentTime);
+        if (Objects.nonNull(cacheValue)) {
+            if (!cacheValue.isStale(currentTime)) {
+                cacheValue.setCacheTime(currentTime);
+                return cacheValue.getValue();
+            }
+        }
+        var sharedTier = cachedObjectMethod.getSharedTier();
+        var sharedKey = sharedTier != null ? sharedTier.createKey(cacheKey) : null;
+        if (sharedKey != null) {
+            var sharedValue = sharedTier.getValue(sharedKey);
+            if (sharedValue != CacheSharedTier.NOT_FOUND) {
+                putValue(cachedObjectMethod, methodStore, cacheKey, sharedValue);
+                return sharedValue;
+            }
+        }
+        var result = cachedObjectMethod.invoke(cachedObject, args);
+        putValue(cachedObjectMethod, methodStore, cacheKey, result);
+        if (sharedKey != null) {
+            sharedTier.putValue(sharedKey, result, cachedObjectMethod.getExpirePeriod());
+        }
+        return result;
+    }
+
+    /**
+     * Запуск фонового обновления кэшированного значения.
+     * <p>
+     * Результат вызова помещается в кэш, только если состояние проксируемого объекта
+     * после вызова соответствует ключу значения.
+     *
+     * @param args               параметры вызова метода
+     * @param cachedObjectMethod метод проксируемого объекта
+     * @param methodStore        хранилище кэшированных данных метода
+     * @param cacheKey           уникальный ключ, идентифицирующий значение
+     */
+    private void refreshValue(Object[] args, CachedObjectMethod cachedObjectMethod, CacheMethodStore methodStore,
+                              CacheKey cacheKey) {
+        var refreshKey = cacheKey.snapshot();
+        methodStore.refreshValue(refreshKey, () -> {
+            var result = cachedObjectMethod.invoke(cachedObject, args);
+            if (refreshKey.equals(createCacheKey(cachedObjectMethod, args))) {
+                if (cachedObjectMethod.isAsync() && result instanceof CompletableFuture<?> future && !future.isDone()) {
+                    future.thenRun(() -> putValue(cachedObjectMethod, methodStore, refreshKey, future));
+                } else {
+                    putValue(cachedObjectMethod, methodStore, refreshKey, result);
+                }
+            }
+            return result;
+        }, getRefreshExecutor());
+    }
+
+    /**
+     * Помещение результата вызова метода в кэш.
+     * <p>
+     * Результат асинхронного метода, завершённый с ошибкой, в кэш не помещается.
+     * Незавершённый результат помещается в кэш сразу, после завершения он заменяется значением
+     * со временем завершения или удаляется из кэша, если завершён с ошибкой.
+     * Замена выполняется по ключу, под которым значение помещено в кэш, а не по ключу вызова,
+     * так как массивы в параметрах вызова могут быть изменены до завершения.
+     * Результат, не завершённый до истечения срока жизни, удаляется очисткой кэша.
+     *
+     * @param cachedObjectMethod метод проксируемого объекта
+     * @param methodStore        хранилище кэшированных данных метода
+     * @param cacheKey           уникальный ключ, идентифицирующий значение
+     * @param result             результат вызова метода
+     */
+    private void putValue(CachedObjectMethod cachedObjectMethod, CacheMethodStore methodStore, CacheKey cacheKey,
+                          Object result) {
+        var cacheValue = new CacheValue(result, clock.currentTimeMillis(),
+                cachedObjectMethod.getExpirePeriod(), cachedObjectMethod.getStaleWhileRevalidate());
+        if (cachedObjectMethod.isAsync() && result instanceof CompletableFuture<?> future) {
+            if (future.isCompletedExceptionally()) {
+                return;
+            }
+            if (!future.isDone()) {
+                var storedKey = methodStore.putValue(cacheKey, cacheValue);
+                future.whenComplete((value, exception) -> {
+                    if (exception != null) {
+                        methodStore.removeValue(storedKey, cacheValue);
+                    } else {
+                        methodStore.replaceValue(storedKey, cacheValue, new CacheValue(future, clock.currentTimeMillis(),
+                                cachedObjectMethod.getExpirePeriod(), cachedObjectMethod.getStaleWhileRevalidate()));
+                    }
+                });
+                return;
+            }
+        }
+        methodStore.putValue(cacheKey, cacheValue);
+    }
+
+    /**
+     * Формирование уникального ключа кэша по параметрам вызова и состоянию проксируемого объекта.
+     * <p>
+     * Для методов без параметров возвращается последний ключ метода, если состояние объекта в нём
+     * совпадает с текущим: номер версии состояния или значения полей объекта.
+     *
+     * @param cachedObjectMethod метод проксируемого объекта
+     * @param args               параметры вызова метода
+     * @return уникальный ключ, идентифицирующий значение
+     */
+    private CacheKey createCacheKey(CachedObjectMethod cachedObjectMethod, Object[] args) {
+        if (!cachedObjectMethod.isNoArgs()) {
+            return generateCacheKey(cachedObjectMethod, args);
+        }
+        var cacheIndex = cachedObjectMethod.getCacheIndex();
+        var cacheKey = lastKeys[cacheIndex];
+        if (cacheKey != null && (cachedObjectStateType == CacheStateType.VERSION
+                ? cacheKey.getStateVersion() == stateVersions.get(cacheIndex)
+                : cachedObjectMethod.getKeyGenerator().matchesState(cacheKey, cachedObject))) {
+            return cacheKey;
+        }
+        cacheKey = generateCacheKey(cachedObjectMethod, args).snapshot();
+        lastKeys[cacheIndex] = cacheKey;
+        return cacheKey;
+    }
+
+    private CacheKey generateCacheKey(CachedObjectMethod cachedObjectMethod, Object[] args) {
+        var parameters = cachedObjectMethod.getKeyParameters(cachedObject, args);
+        return cachedObjectStateType == CacheStateType.VERSION
+                ? new CacheKey(parameters, stateVersions.get(cachedObjectMethod.getCacheIndex()))
+                : cachedObjectMethod.getKeyGenerator().generateKey(parameters, cachedObject);
+    }
+
+    /**
+     * Получение исполнителя фоновых обновлений кэшированных значений, при первом обращении он создаётся.
+     *
+     * @return исполнитель фоновых обновлений
+     */
+    private static ExecutorService getRefreshExecutor() {
+        if (refreshExecutor == null) {
+            synchronized (CacheInvocationHandler.class) {
+                if (refreshExecutor == null) {
+                    refreshExecutor = Executors.newCachedThreadPool(runnable -> {
+                        var thread = new Thread(runnable, "cache-refresh");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return refreshExecutor;
+    }
+
+    /**
+     * Функция <b>createCachedObjectMethods</b> для всех методов интерфейсов проксируемого класса
+     * и методов equals, hashCode, toString, вызовы которых передаются в прокси-объект,
+     * определяет соответствующие им методы проксируемого класса.
+     * Кэшируемым методам назначаются индексы в обработчике,
+     * для методов с аннотацией <b>@Mutator</b> определяются кэшируемые методы, значения которых они сбрасывают.
+     * Вызывается один раз для класса из {@link CacheClassMetadata}.
+     *
+     * @param objectClass класс проксируемого объекта
+     * @return неизменяемая коллекция соответствия методов
+     */
+    static Map<Method, CachedObjectMethod> createCachedObjectMethods(Class<?> objectClass) {
+        var keyGenerator = CacheKeyGenerator.forClass(objectClass);
+        var proxyMethods = new ArrayList<Method>();
+        for (var objectInterface : objectClass.getInterfaces()) {
+            proxyMethods.addAll(Arrays.asList(objectInterface.getMethods()));
+        }
+        try {
+            proxyMethods.add(Object.class.getMethod("equals", Object.class));
+            proxyMethods.add(Object.class.getMethod("hashCode"));
+            proxyMethods.add(Object.class.getMethod("toString"));
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+
+        Map<Method, CachedObjectMethod> cachedObjectMethods = new HashMap<>();
+        for (var proxyMethod : proxyMethods) {
             try {
-                var cachedMethod = cachedObject.getClass().getMethod(method.getName(), method.getParameterTypes());
-                cachedObjectMethod = new CachedObjectMethod(cachedMethod);
+                var cachedMethod = objectClass.getMethod(proxyMethod.getName(), proxyMethod.getParameterTypes());
+                cachedObjectMethods.put(proxyMethod, new CachedObjectMethod(cachedMethod, proxyMethod, keyGenerator));
             } catch (NoSuchMethodException ignored) {
             }
-            cachedObjectMethods.put(method, cachedObjectMethod);
         }
-        return cachedObjectMethod;
+        var cacheMethods = cachedObjectMethods.values().stream()
+                .filter(CachedObjectMethod::isCache)
+                .distinct()
+                .toList();
+        for (int i = 0; i < cacheMethods.size(); i++) {
+            cacheMethods.get(i).cacheIndex = i;
+        }
+        for (var cachedObjectMethod : cachedObjectMethods.values()) {
+            if (cachedObjectMethod.isMutator()) {
+                cachedObjectMethod.setAffectedMethods(cacheMethods);
+            }
+        }
+        return Map.copyOf(cachedObjectMethods);
+    }
+
+    /**
+     * Действие освобождения хранилища прокси-объекта: снятие хранилища со сборщика кэшированных данных
+     * и отмена периодической записи снимка.
+     */
+    private static final class CacheStoreRelease implements Runnable {
+        private final CacheStore cacheStore;
+        /**
+         * Файл снимка, запись которого отменяется, null - сохранение в файл не настроено.
+         */
+        private final CacheSnapshotFile snapshotFile;
+
+        private CacheStoreRelease(CacheStore cacheStore, CacheSnapshotFile snapshotFile) {
+            this.cacheStore = cacheStore;
+            this.snapshotFile = snapshotFile;
+        }
+
+        @Override
+        public void run() {
+            var cleaner = cacheCleaner;
+            if (cleaner != null) {
+                cleaner.removeCacheStorage(cacheStore);
+            }
+            if (snapshotFile != null) {
+                snapshotFile.cancel();
+            }
+        }
     }
 
     /**
      * Класс <b>CachedObjectMethod</b> для хранения необходимых настроек аннотаций метода проксируемого объекта.
+     * Не содержит состояния прокси-объекта и разделяется всеми обработчиками класса.
+     * <p>
+     * Вызов метода проксируемого объекта выполняется через <b>MethodHandle</b>, подготовленный при создании,
+     * исключения вызываемого метода передаются вызывающему без обёртки.
      */
     static class CachedObjectMethod {
+        private static final MethodType INVOKER_TYPE =
+                MethodType.methodType(Object.class, Object.class, Object[].class);
         private final Method method;
+        private final MethodHandle invoker;
         private final boolean isCache;
         private final boolean isMutator;
+        /**
+         * Признак асинхронного метода, возвращающего {@link CompletableFuture} или {@link CompletionStage}.
+         */
+        private final boolean isAsync;
+        /**
+         * Признак метода без параметров, ключ которого определяется только состоянием объекта.
+         */
+        private final boolean isNoArgs;
+        /**
+         * Номер параметра-коллекции для пакетного кэширования, -1 - пакетное кэширование не задано.
+         */
+        private final int bulkParameter;
+        /**
+         * Связь метода с общим хранилищем второго уровня, null - общее хранилище не используется.
+         */
+        private final CacheSharedTier sharedTier;
         private final long expirePeriod;
+        private final long loadTimeout;
+        private final long refreshAfter;
+        private final long staleWhileRevalidate;
+        /**
+         * Поля состояния объекта, от которых зависит кэшируемый метод или которые изменяет метод-мутатор,
+         * пустое множество - все поля.
+         */
+        private final Set<String> stateFields;
+        /**
+         * Генератор уникальных ключей кэша по полям, от которых зависит кэшируемый метод.
+         */
+        private final CacheKeyGenerator keyGenerator;
+        /**
+         * Номера параметров, включаемых в ключ кэша, null - все параметры.
+         */
+        private final int[] keyParameters;
+        /**
+         * Формирование части ключа по параметрам вызова, null - в ключ включаются параметры.
+         */
+        private final CacheKeyExtractor keyExtractor;
+        /**
+         * Индекс кэшируемого метода в обработчике: номера версии состояния, хранилища и последнего ключа.
+         */
+        private int cacheIndex = -1;
+        /**
+         * Кэшируемые методы, значения которых сбрасывает метод-мутатор.
+         * Заполняется один раз при создании коллекции методов обработчика.
+         */
+        private List<CachedObjectMethod> affectedMethods = List.of();
 
-        public CachedObjectMethod(Method method) {
+        /**
+         * @param method       метод проксируемого объекта
+         * @param proxyMethod  метод интерфейса, через который выполняется вызов метода проксируемого объекта
+         * @param keyGenerator генератор уникальных ключей кэша для класса проксируемого объекта
+         */
+        public CachedObjectMethod(Method method, Method proxyMethod, CacheKeyGenerator keyGenerator) {
             this.method = method;
+            this.invoker = createInvoker(proxyMethod);
             this.isCache = method.isAnnotationPresent(Cache.class);
+            this.isAsync = method.getReturnType() == CompletableFuture.class
+                    || method.getReturnType() == CompletionStage.class;
+            this.bulkParameter = isCache && method.isAnnotationPresent(BulkCache.class)
+                    ? getBulkParameter(method) : -1;
             if (this.isCache) {
                 this.isMutator = false;
-                expirePeriod = method.getAnnotation(Cache.class).expirePeriod();
+                var cache = method.getAnnotation(Cache.class);
+                expirePeriod = cache.expirePeriod();
+                loadTimeout = cache.loadTimeout();
+                refreshAfter = cache.refreshAfter();
+                staleWhileRevalidate = expirePeriod > 0 ? cache.staleWhileRevalidate() : 0;
+                stateFields = Set.of(cache.dependsOn());
+                this.keyGenerator = keyGenerator.withFields(stateFields);
+                this.keyParameters = getKeyParameters(method, cache);
+                this.keyExtractor = cache.keyExtractor() != CacheKeyExtractor.class
+                        ? CacheUtils.createInstance(cache.keyExtractor())
+                        : null;
+                if (cache.shared() && bulkParameter >= 0) {
+                    throw new IllegalArgumentException("Общее хранилище не поддерживается для метода " + method
+                            + " с аннотацией @BulkCache");
+                }
+                this.sharedTier = cache.shared() && !isAsync
+                        ? new CacheSharedTier(method, CacheUtils.createInstance(cache.serializer()))
+                        : null;
             } else {
                 this.isMutator = method.isAnnotationPresent(Mutator.class);
                 expirePeriod = 0;
+                loadTimeout = 0;
+                refreshAfter = 0;
+                staleWhileRevalidate = 0;
+                stateFields = isMutator ? Set.of(method.getAnnotation(Mutator.class).fields()) : Set.of();
+                keyGenerator.checkFields(stateFields);
+                this.keyGenerator = keyGenerator;
+                this.keyParameters = null;
+                this.keyExtractor = null;
+                this.sharedTier = null;
+            }
+            this.isNoArgs = method.getParameterCount() == 0 && keyExtractor == null;
+            if (bulkParameter >= 0 && keyParameters != null
+                    && Arrays.stream(keyParameters).noneMatch(parameter -> parameter == bulkParameter)) {
+                throw new IllegalArgumentException("Параметр-коллекция метода " + method + " не включён в keyParameters");
+            }
+        }
+
+        /**
+         * Проверка номеров параметров, включаемых в ключ кэша.
+         *
+         * @param method метод проксируемого объекта
+         * @param cache  аннотация кэшируемого метода
+         * @return номера параметров, null - все параметры
+         */
+        private static int[] getKeyParameters(Method method, Cache cache) {
+            var keyParameters = cache.keyParameters();
+            if (keyParameters.length == 0) {
+                return null;
+            }
+            if (cache.keyExtractor() != CacheKeyExtractor.class) {
+                throw new IllegalArgumentException("Для метода " + method
+                        + " заданы одновременно keyParameters и keyExtractor");
+            }
+            for (var parameter : keyParameters) {
+                if (parameter < 0 || parameter >= method.getParameterCount()) {
+                    throw new IllegalArgumentException("Не найден параметр " + parameter + " метода " + method);
+                }
+            }
+            return keyParameters.clone();
+        }
+
+        /**
+         * Получение параметров вызова, включаемых в ключ кэша.
+         *
+         * @param cachedObject проксируемый объект
+         * @param args         параметры вызова метода
+         * @return параметры ключа кэша
+         */
+        public Object[] getKeyParameters(Object cachedObject, Object[] args) {
+            if (keyExtractor != null) {
+                return new Object[]{keyExtractor.extractKey(cachedObject, args)};
+            }
+            if (keyParameters == null) {
+                return args;
+            }
+            var parameters = new Object[keyParameters.length];
+            for (int i = 0; i < keyParameters.length; i++) {
+                parameters[i] = args[keyParameters[i]];
+            }
+            return parameters;
+        }
+
+        private static MethodHandle createInvoker(Method proxyMethod) {
+            try {
+                proxyMethod.setAccessible(true);
+            } catch (RuntimeException ignored) {
+            }
+            try {
+                return MethodHandles.lookup().unreflect(proxyMethod)
+                        .asSpreader(Object[].class, proxyMethod.getParameterCount())
+                        .asType(INVOKER_TYPE);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Нет доступа к методу " + proxyMethod, e);
             }
         }
 
@@ -164,6 +900,17 @@ final class CacheInvocationHandler implements InvocationHandler {
             return method;
         }
 
+        /**
+         * Вызов метода проксируемого объекта.
+         *
+         * @param cachedObject проксируемый объект
+         * @param args         параметры вызова метода
+         * @return результат вызова метода
+         */
+        public Object invoke(Object cachedObject, Object[] args) throws Throwable {
+            return (Object) invoker.invokeExact(cachedObject, args);
+        }
+
         public boolean isCache() {
             return isCache;
         }
@@ -172,8 +919,92 @@ final class CacheInvocationHandler implements InvocationHandler {
             return isMutator;
         }
 
+        public boolean isNoArgs() {
+            return isNoArgs;
+        }
+
+        public boolean isAsync() {
+            return isAsync;
+        }
+
+        public CacheSharedTier getSharedTier() {
+            return sharedTier;
+        }
+
+        public boolean isBulk() {
+            return bulkParameter >= 0;
+        }
+
+        public int getBulkParameter() {
+            return bulkParameter;
+        }
+
+        public Class<?> getBulkParameterType() {
+            return method.getParameterTypes()[bulkParameter];
+        }
+
+        /**
+         * Проверка сигнатуры метода с пакетным кэшированием.
+         *
+         * @param method метод проксируемого объекта
+         * @return номер параметра-коллекции
+         */
+        private static int getBulkParameter(Method method) {
+            var parameter = method.getAnnotation(BulkCache.class).parameter();
+            if (parameter < 0 || parameter >= method.getParameterCount()) {
+                throw new IllegalArgumentException("Не найден параметр-коллекция " + parameter + " метода " + method);
+            }
+            var parameterType = method.getParameterTypes()[parameter];
+            if (parameterType != Collection.class && parameterType != List.class && parameterType != Set.class) {
+                throw new IllegalArgumentException("Параметр " + parameter + " метода " + method
+                        + " должен иметь тип Collection, List или Set");
+            }
+            if (method.getReturnType() != Map.class) {
+                throw new IllegalArgumentException("Метод " + method + " должен возвращать Map");
+            }
+            return parameter;
+        }
+
         public long getExpirePeriod() {
             return expirePeriod;
         }
+
+        public long getLoadTimeout() {
+            return loadTimeout;
+        }
+
+        public long getRefreshAfter() {
+            return refreshAfter;
+        }
+
+        public long getStaleWhileRevalidate() {
+            return staleWhileRevalidate;
+        }
+
+        public CacheKeyGenerator getKeyGenerator() {
+            return keyGenerator;
+        }
+
+        public int getCacheIndex() {
+            return cacheIndex;
+        }
+
+        public List<CachedObjectMethod> getAffectedMethods() {
+            return affectedMethods;
+        }
+
+        /**
+         * Определение кэшируемых методов, значения которых сбрасывает метод-мутатор:
+         * методы, зависящие от всех полей, или от полей, которые изменяет метод-мутатор.
+         *
+         * @param cacheMethods кэшируемые методы проксируемого объекта
+         */
+        private void setAffectedMethods(List<CachedObjectMethod> cacheMethods) {
+            affectedMethods = cacheMethods.stream()
+                    .filter(cacheMethod -> stateFields.isEmpty()
+                            || cacheMethod.stateFields.isEmpty()
+                            || !Collections.disjoint(stateFields, cacheMethod.stateFields))
+                    .toList();
+        }
     }
 }
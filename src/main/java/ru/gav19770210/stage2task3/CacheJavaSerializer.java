@@ -0,0 +1,36 @@
+package ru.gav19770210.stage2task3;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Преобразование кэшированных значений стандартной сериализацией Java.
+ * Используется по умолчанию, значения должны реализовывать {@link java.io.Serializable}.
+ */
+public class CacheJavaSerializer implements CacheSerializer {
+    @Override
+    public byte[] serialize(Object value) {
+        var bytes = new ByteArrayOutputStream();
+        try (var output = new ObjectOutputStream(bytes)) {
+            output.writeObject(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка сериализации значения", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) {
+        try (var input = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return input.readObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка десериализации значения", e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Ошибка десериализации значения", e);
+        }
+    }
+}
@@ -1,51 +1,124 @@
 package ru.gav19770210.stage2task3;
 
-import java.lang.reflect.Field;
+import java.lang.reflect.Array;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
 
 /**
  * Класс <b>CacheKey</b> описывает уникальный ключ, идентифицирующий значение кэша.
+ * <p>
+ * Ключи формируются генератором {@link CacheKeyGenerator}, хэш-код вычисляется один раз при создании ключа.
+ * Состояние объекта в ключе задаётся либо значениями его полей, либо номером версии состояния.
+ * <p>
+ * Параметры и поля, являющиеся массивами, сравниваются по содержимому, в том числе вложенные массивы.
+ * Перед помещением в кэш ключ заменяется снимком {@link #snapshot()} с копиями массивов,
+ * поэтому изменение массива после вызова метода не изменяет ключ в кэше.
  */
 final class CacheKey {
     private final Object[] parameters;
 
-    private final Map<Field, Object> stateFields;
+    private final Object[] stateFields;
 
-    public CacheKey(Object[] parameters, Object object) throws IllegalAccessException {
+    private final long stateVersion;
+
+    private final int hash;
+
+    public CacheKey(Object[] parameters, Object[] stateFields) {
+        this.parameters = parameters;
+        this.stateFields = stateFields;
+        this.stateVersion = 0;
+        this.hash = 31 * Arrays.deepHashCode(stateFields) + Arrays.deepHashCode(parameters);
+    }
+
+    public CacheKey(Object[] parameters, long stateVersion) {
         this.parameters = parameters;
-        this.stateFields = getStateFields(object);
+        this.stateFields = null;
+        this.stateVersion = stateVersion;
+        this.hash = 31 * Long.hashCode(stateVersion) + Arrays.deepHashCode(parameters);
+    }
+
+    private CacheKey(Object[] parameters, Object[] stateFields, long stateVersion, int hash) {
+        this.parameters = parameters;
+        this.stateFields = stateFields;
+        this.stateVersion = stateVersion;
+        this.hash = hash;
+    }
+
+    public Object[] getParameters() {
+        return parameters;
     }
 
-    private Map<Field, Object> getStateFields(Object object) throws IllegalAccessException {
-        Map<Field, Object> cacheFields = new HashMap<>();
-        var objectClass = object.getClass();
-        do {
-            for (var field : objectClass.getDeclaredFields()) {
-                if (!field.isAnnotationPresent(CacheTest.class)) {
-                    field.setAccessible(true);
-                    cacheFields.put(field, field.get(object));
+    public Object[] getStateFields() {
+        return stateFields;
+    }
+
+    public long getStateVersion() {
+        return stateVersion;
+    }
+
+    /**
+     * Получение ключа, не зависящего от последующих изменений массивов в параметрах и полях.
+     *
+     * @return копия ключа с копиями массивов, либо этот ключ, если массивов в нём нет
+     */
+    public CacheKey snapshot() {
+        var parametersCopy = copyArrays(parameters);
+        var stateFieldsCopy = copyArrays(stateFields);
+        if (parametersCopy == parameters && stateFieldsCopy == stateFields) {
+            return this;
+        }
+        return new CacheKey(parametersCopy, stateFieldsCopy, stateVersion, hash);
+    }
+
+    /**
+     * Копирование элементов-массивов.
+     *
+     * @param values значения
+     * @return копия значений с копиями массивов, либо те же значения, если массивов среди них нет
+     */
+    private static Object[] copyArrays(Object[] values) {
+        if (values == null) {
+            return null;
+        }
+        Object[] copy = null;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null && values[i].getClass().isArray()) {
+                if (copy == null) {
+                    copy = values.clone();
                 }
+                copy[i] = copyArray(values[i]);
             }
-            objectClass = objectClass.getSuperclass();
-        } while (objectClass != Object.class);
+        }
+        return copy != null ? copy : values;
+    }
 
-        return cacheFields;
+    private static Object copyArray(Object array) {
+        if (array instanceof Object[] objects) {
+            var copy = objects.clone();
+            for (int i = 0; i < copy.length; i++) {
+                if (copy[i] != null && copy[i].getClass().isArray()) {
+                    copy[i] = copyArray(copy[i]);
+                }
+            }
+            return copy;
+        }
+        var length = Array.getLength(array);
+        var copy = Array.newInstance(array.getClass().getComponentType(), length);
+        System.arraycopy(array, 0, copy, 0, length);
+        return copy;
     }
 
     @Override
     public boolean equals(Object object) {
         if (this == object) return true;
         if (!(object instanceof CacheKey cacheKey)) return false;
-        return Arrays.equals(parameters, cacheKey.parameters) && Objects.equals(stateFields, cacheKey.stateFields);
+        return hash == cacheKey.hash
+                && stateVersion == cacheKey.stateVersion
+                && Arrays.deepEquals(parameters, cacheKey.parameters)
+                && Arrays.deepEquals(stateFields, cacheKey.stateFields);
     }
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(stateFields);
-        result = 31 * result + Arrays.hashCode(parameters);
-        return result;
+        return hash;
     }
 }
@@ -0,0 +1,19 @@
+package ru.gav19770210.stage2task3;
+
+/**
+ * Интерфейс формирования части ключа кэша по параметрам вызова метода.
+ * <p>
+ * Используется для компактных ключей предметной области вместо всех параметров вызова,
+ * см. {@link Cache#keyExtractor()}. Состояние объекта добавляется в ключ как обычно.
+ * Реализация должна иметь открытый конструктор без параметров.
+ */
+public interface CacheKeyExtractor {
+    /**
+     * Формирование части ключа по параметрам вызова метода.
+     *
+     * @param object     проксируемый объект
+     * @param parameters параметры вызова метода, null - метод без параметров
+     * @return часть ключа с корректными <b>equals</b> и <b>hashCode</b>
+     */
+    Object extractKey(Object object, Object[] parameters);
+}
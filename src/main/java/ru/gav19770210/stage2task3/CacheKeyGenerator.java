@@ -0,0 +1,169 @@
+package ru.gav19770210.stage2task3;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Класс <b>CacheKeyGenerator</b> формирует уникальные ключи кэша для объектов заданного класса.
+ * <p>
+ * Анализ полей класса через java.lang.reflect выполняется один раз при создании генератора.
+ * Для каждого поля состояния сохраняется <b>MethodHandle</b> чтения его значения,
+ * поэтому формирование ключа при вызове метода не выполняет поиск полей и проверку доступа.
+ * <p>
+ * Для методов, зависящих только от части полей, создаётся генератор с ограниченным набором полей
+ * через {@link #withFields(Collection)}.
+ */
+final class CacheKeyGenerator {
+    /**
+     * Генераторы ключей в разрезе классов проксируемых объектов.
+     */
+    private static final ClassValue<CacheKeyGenerator> GENERATORS = new ClassValue<>() {
+        @Override
+        protected CacheKeyGenerator computeValue(Class<?> objectClass) {
+            return new CacheKeyGenerator(objectClass);
+        }
+    };
+    /**
+     * Тип функции чтения значения поля, приведённый к виду (Object)Object.
+     */
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    /**
+     * Имена полей, определяющих состояние объекта.
+     */
+    private final String[] stateNames;
+    /**
+     * Функции чтения значений полей, определяющих состояние объекта.
+     */
+    private final MethodHandle[] stateGetters;
+
+    private CacheKeyGenerator(Class<?> objectClass) {
+        List<String> names = new ArrayList<>();
+        List<MethodHandle> getters = new ArrayList<>();
+        var lookup = MethodHandles.lookup();
+        var fieldsClass = objectClass;
+        do {
+            for (var field : fieldsClass.getDeclaredFields()) {
+                if (!field.isAnnotationPresent(CacheTest.class)) {
+                    field.setAccessible(true);
+                    try {
+                        var getter = lookup.unreflectGetter(field);
+                        if (Modifier.isStatic(field.getModifiers())) {
+                            getter = MethodHandles.dropArguments(getter, 0, Object.class);
+                        }
+                        names.add(field.getName());
+                        getters.add(getter.asType(GETTER_TYPE));
+                    } catch (IllegalAccessException e) {
+                        throw new IllegalStateException("Нет доступа к полю " + field, e);
+                    }
+                }
+            }
+            fieldsClass = fieldsClass.getSuperclass();
+        } while (fieldsClass != Object.class);
+
+        this.stateNames = names.toArray(new String[0]);
+        this.stateGetters = getters.toArray(new MethodHandle[0]);
+    }
+
+    private CacheKeyGenerator(String[] stateNames, MethodHandle[] stateGetters) {
+        this.stateNames = stateNames;
+        this.stateGetters = stateGetters;
+    }
+
+    /**
+     * Получение генератора ключей для заданного класса.
+     *
+     * @param objectClass класс проксируемого объекта
+     * @return генератор ключей
+     */
+    public static CacheKeyGenerator forClass(Class<?> objectClass) {
+        return GENERATORS.get(objectClass);
+    }
+
+    /**
+     * Получение генератора ключей, учитывающего только заданные поля состояния объекта.
+     *
+     * @param fieldNames имена полей, пустая коллекция - все поля
+     * @return генератор ключей
+     */
+    public CacheKeyGenerator withFields(Collection<String> fieldNames) {
+        if (fieldNames.isEmpty()) {
+            return this;
+        }
+        checkFields(fieldNames);
+        List<String> names = new ArrayList<>();
+        List<MethodHandle> getters = new ArrayList<>();
+        for (int i = 0; i < stateNames.length; i++) {
+            if (fieldNames.contains(stateNames[i])) {
+                names.add(stateNames[i]);
+                getters.add(stateGetters[i]);
+            }
+        }
+        return new CacheKeyGenerator(names.toArray(new String[0]), getters.toArray(new MethodHandle[0]));
+    }
+
+    /**
+     * Проверка, что заданные имена являются полями состояния объекта.
+     *
+     * @param fieldNames имена полей
+     */
+    public void checkFields(Collection<String> fieldNames) {
+        var stateNameList = Arrays.asList(stateNames);
+        for (var fieldName : fieldNames) {
+            if (!stateNameList.contains(fieldName)) {
+                throw new IllegalArgumentException("Поле " + fieldName + " не входит в состояние объекта");
+            }
+        }
+    }
+
+    /**
+     * Проверка, что состояние объекта в ключе совпадает с текущим состоянием объекта.
+     * Выполняется без формирования нового ключа.
+     *
+     * @param cacheKey ключ, сформированный этим генератором
+     * @param object   проксируемый объект
+     * @return true - значения полей объекта равны значениям в ключе, иначе false
+     */
+    public boolean matchesState(CacheKey cacheKey, Object object) {
+        var stateFields = cacheKey.getStateFields();
+        try {
+            for (int i = 0; i < stateGetters.length; i++) {
+                if (!Objects.deepEquals(stateFields[i], (Object) stateGetters[i].invokeExact(object))) {
+                    return false;
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Ошибка чтения состояния объекта", e);
+        }
+        return true;
+    }
+
+    /**
+     * Формирование ключа по параметрам вызова метода и текущему состоянию объекта.
+     *
+     * @param parameters параметры вызова метода
+     * @param object     проксируемый объект
+     * @return уникальный ключ, идентифицирующий значение
+     */
+    public CacheKey generateKey(Object[] parameters, Object object) {
+        var stateFields = new Object[stateGetters.length];
+        try {
+            for (int i = 0; i < stateGetters.length; i++) {
+                stateFields[i] = (Object) stateGetters[i].invokeExact(object);
+            }
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Ошибка чтения состояния объекта", e);
+        }
+        return new CacheKey(parameters, stateFields);
+    }
+}
@@ -0,0 +1,21 @@
+package ru.gav19770210.stage2task3;
+
+/**
+ * Интерфейс обработчика вызовов одного метода прокси-объекта.
+ * <p>
+ * Вызывается напрямую из методов прокси-объектов, сгенерированных {@link CacheFactory#makeGeneratedCacheable},
+ * без передачи прокси-объекта и метода, поэтому должен быть доступен из пакета исходного объекта.
+ * Параметры вызова передаются массивом, так как из них формируется ключ кэша.
+ * <p>
+ * Проверяемое исключение, не объявленное методом прокси-объекта, обработчик оборачивает
+ * в {@link java.lang.reflect.UndeclaredThrowableException}, как и <b>java.lang.reflect.Proxy</b>.
+ */
+public interface CacheMethodHandler {
+    /**
+     * Выполнение вызова метода.
+     *
+     * @param args параметры вызова метода
+     * @return результат вызова метода
+     */
+    Object invoke(Object[] args) throws Throwable;
+}
@@ -0,0 +1,412 @@
+package ru.gav19770210.stage2task3;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Класс <b>CacheMethodStore</b> реализует хранение кэшированных данных одного метода проксируемого объекта.
+ * <p>
+ * Для значений с не нулевым сроком жизни ведётся очередь истечения срока жизни в порядке помещения в кэш.
+ * Очистка извлекает из головы очереди только те значения, срок жизни которых истёк,
+ * поэтому её стоимость не зависит от количества значений в кэше.
+ * Значение, обращение к которому было после постановки в очередь, возвращается в конец очереди
+ * с пересчитанным временем истечения срока жизни.
+ * Если задан размер пакета очистки, то за один вызов разбирается не больше заданного количества элементов очереди,
+ * следующий вызов продолжает разбор с головы очереди.
+ * <p>
+ * Если для метода задано ограничение размера кэша, то добавление и удаление значений выполняется
+ * через политику вытеснения {@link CacheEvictionPolicy}.
+ * Если для метода задан размер хранилища вне кучи, то вытесненные значения переносятся в {@link CacheOffHeapStore}
+ * и возвращаются в кэш при обращении к ним.
+ * <p>
+ * Одновременные загрузки значения по одному ключу объединяются: загрузку выполняет первый поток,
+ * остальные ожидают её результат.
+ * <p>
+ * Статистика работы кэша метода накапливается в {@link CacheMetrics}.
+ */
+final class CacheMethodStore {
+    /**
+     * Срок жизни кэшированных значений метода.
+     */
+    private final long expirePeriod;
+    /**
+     * Коллекция для хранения кэшированных данных по уникальному ключу.
+     */
+    private final Map<CacheKey, CacheValue> cacheValues = new ConcurrentHashMap<>();
+    /**
+     * Очередь истечения срока жизни кэшированных значений.
+     */
+    private final Queue<ExpireNode> expireQueue = new ConcurrentLinkedQueue<>();
+    /**
+     * Блокировка разбора очереди истечения срока жизни, очистку одновременно выполняет только один поток.
+     */
+    private final ReentrantLock expireLock = new ReentrantLock();
+    /**
+     * Политика вытеснения значений при ограничении размера кэша, null - размер не ограничен.
+     */
+    private final CacheEvictionPolicy evictionPolicy;
+    /**
+     * Выполняемые загрузки значений по уникальному ключу.
+     */
+    private final Map<CacheKey, CompletableFuture<Object>> loadingValues = new ConcurrentHashMap<>();
+    /**
+     * Статистика работы кэша метода.
+     */
+    private final CacheMetrics metrics = new CacheMetrics();
+    /**
+     * Максимальное количество элементов очереди истечения срока жизни, разбираемых одной очисткой.
+     */
+    private final int cleanBatchSize;
+    /**
+     * Хранилище значений вне кучи, null - не используется.
+     */
+    private final CacheOffHeapStore offHeapStore;
+
+    /**
+     * @param expirePeriod   срок жизни кэшированных значений метода
+     * @param maxEntries     максимальное количество значений, 0 - не ограничено
+     * @param maxWeight      максимальный суммарный вес значений, 0 - не ограничен
+     * @param weigher        интерфейс определения веса значения
+     * @param cleanBatchSize максимальное количество элементов очереди, разбираемых одной очисткой, 0 - не ограничено
+     */
+    public CacheMethodStore(long expirePeriod, long maxEntries, long maxWeight, CacheWeigher weigher,
+                            int cleanBatchSize) {
+        this(expirePeriod, maxEntries, maxWeight, weigher, cleanBatchSize, 0, null);
+    }
+
+    /**
+     * @param expirePeriod    срок жизни кэшированных значений метода
+     * @param maxEntries      максимальное количество значений, 0 - не ограничено
+     * @param maxWeight       максимальный суммарный вес значений, 0 - не ограничен
+     * @param weigher         интерфейс определения веса значения
+     * @param cleanBatchSize  максимальное количество элементов очереди, разбираемых одной очисткой, 0 - не ограничено
+     * @param offHeapMaxBytes максимальный размер хранилища вне кучи в байтах, 0 - не используется
+     * @param serializer      интерфейс преобразования значений для хранения вне кучи
+     */
+    public CacheMethodStore(long expirePeriod, long maxEntries, long maxWeight, CacheWeigher weigher,
+                            int cleanBatchSize, long offHeapMaxBytes, CacheSerializer serializer) {
+        this.expirePeriod = expirePeriod;
+        this.cleanBatchSize = cleanBatchSize > 0 ? cleanBatchSize : Integer.MAX_VALUE;
+        this.offHeapStore = offHeapMaxBytes > 0 ? new CacheOffHeapStore(offHeapMaxBytes, serializer, metrics) : null;
+        this.evictionPolicy = maxEntries > 0 || maxWeight > 0
+                ? new CacheEvictionPolicy(cacheValues, maxEntries, maxWeight, weigher, this::onEviction)
+                : null;
+    }
+
+    /**
+     * Обработка значения, вытесненного по ограничению размера кэша.
+     */
+    private void onEviction(CacheKey cacheKey, CacheValue cacheValue) {
+        if (offHeapStore != null) {
+            offHeapStore.putValue(cacheKey, cacheValue);
+        } else {
+            metrics.recordEviction(CacheRemovalCause.SIZE);
+        }
+    }
+
+    public long getExpirePeriod() {
+        return expirePeriod;
+    }
+
+    /**
+     * Получение значения из кэша по ключу.
+     * <p>
+     * Значение, возвращаемое из хранилища вне кучи, считается полученным в момент обращения:
+     * оно помещается в кэш с временем обращения и ставится в конец очереди истечения срока жизни
+     * с новым временем истечения, поэтому порядок очереди сохраняется. Устаревшее значение не возвращается
+     * из хранилища вне кучи и удаляется как значение с истёкшим сроком жизни.
+     *
+     * @param cacheKey    уникальный ключ, идентифицирующий значение
+     * @param currentTime время обращения
+     * @return объект кэшированного значения
+     */
+    public CacheValue getValue(CacheKey cacheKey, long currentTime) {
+        var cacheValue = cacheValues.get(cacheKey);
+        if (cacheValue != null && evictionPolicy != null) {
+            evictionPolicy.recordAccess(cacheKey);
+        } else if (cacheValue == null && offHeapStore != null) {
+            cacheValue = offHeapStore.removeValue(cacheKey);
+            if (cacheValue != null) {
+                if (cacheValue.isStale(currentTime) || cacheValue.isExpire(currentTime)) {
+                    metrics.recordEviction(CacheRemovalCause.EXPIRED);
+                    return null;
+                }
+                cacheValue = new CacheValue(cacheValue.getValue(), Long.max(cacheValue.getCacheTime(), currentTime),
+                        cacheValue.getLoadTime(), cacheValue.getExpirePeriod(), cacheValue.getStalePeriod());
+                putValue(cacheKey, cacheValue);
+            }
+        }
+        return cacheValue;
+    }
+
+    /**
+     * Добавлене значения в кэш.
+     * В кэш помещается снимок ключа, не зависящий от последующих изменений массивов в параметрах вызова.
+     * Незавершённый результат асинхронного метода ставится в очередь истечения срока жизни
+     * со временем истечения, рассчитанным от начала вызова, и удаляется очисткой, если не завершён к этому времени.
+     *
+     * @param cacheKey   уникальный ключ, идентифицирующий значение
+     * @param cacheValue объект кэшированного значения
+     * @return ключ, под которым значение помещено в кэш
+     */
+    public CacheKey putValue(CacheKey cacheKey, CacheValue cacheValue) {
+        var storedKey = cacheKey.snapshot();
+        if (evictionPolicy != null) {
+            evictionPolicy.putValue(storedKey, cacheValue);
+        } else {
+            cacheValues.put(storedKey, cacheValue);
+        }
+        if (expirePeriod > 0) {
+            expireQueue.offer(new ExpireNode(storedKey, cacheValue, cacheValue.getExpireTime()));
+        }
+        return storedKey;
+    }
+
+    /**
+     * Получение ближайшего времени истечения срока жизни значений по очереди истечения.
+     * Время может оказаться раньше фактического, если к значению было обращение после постановки в очередь.
+     *
+     * @return время истечения срока жизни, Long.MAX_VALUE - значений с не нулевым сроком жизни нет
+     */
+    public long getNextExpireTime() {
+        var expireNode = expireQueue.peek();
+        return expireNode != null ? expireNode.expireTime : Long.MAX_VALUE;
+    }
+
+    /**
+     * Обход значений, хранящихся в куче.
+     *
+     * @param action действие над ключом и значением
+     */
+    public void forEach(BiConsumer<CacheKey, CacheValue> action) {
+        cacheValues.forEach(action);
+    }
+
+    public CacheMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Получение снимка статистики работы кэша метода.
+     *
+     * @return снимок статистики
+     */
+    public CacheStats getStats() {
+        return metrics.snapshot(cacheValues.size() + (offHeapStore != null ? offHeapStore.size() : 0));
+    }
+
+    /**
+     * Загрузка значения в кэш с объединением одновременных загрузок по одному ключу.
+     * <p>
+     * Если загрузка по ключу уже выполняется другим потоком, то ожидается её результат.
+     * Если за время ожидания загрузка не завершена, то функция загрузки вызывается текущим потоком.
+     *
+     * @param cacheKey    уникальный ключ, идентифицирующий значение
+     * @param loader      функция загрузки значения, помещающая его в кэш
+     * @param loadTimeout время ожидания загрузки в миллисекундах, 0 - без ограничения
+     * @return загруженное значение
+     */
+    public Object loadValue(CacheKey cacheKey, CacheValueLoader loader, long loadTimeout) throws Throwable {
+        var loading = new CompletableFuture<Object>();
+        var existLoading = loadingValues.putIfAbsent(cacheKey, loading);
+        if (existLoading != null) {
+            metrics.recordCoalescedLoad();
+            try {
+                return loadTimeout > 0 ? existLoading.get(loadTimeout, TimeUnit.MILLISECONDS) : existLoading.get();
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            } catch (TimeoutException e) {
+                return load(loader);
+            }
+        }
+        try {
+            var value = load(loader);
+            loading.complete(value);
+            return value;
+        } catch (Throwable e) {
+            loading.completeExceptionally(e);
+            throw e;
+        } finally {
+            loadingValues.remove(cacheKey, loading);
+        }
+    }
+
+    /**
+     * Вызов функции загрузки с учётом времени загрузки в статистике.
+     *
+     * @param loader функция загрузки значения
+     * @return загруженное значение
+     */
+    public Object load(CacheValueLoader loader) throws Throwable {
+        var startTime = System.nanoTime();
+        var success = false;
+        try {
+            var value = loader.load();
+            success = true;
+            return value;
+        } finally {
+            metrics.recordLoad(System.nanoTime() - startTime, success);
+        }
+    }
+
+    /**
+     * Фоновое обновление значения в кэше.
+     * <p>
+     * Если загрузка значения по ключу уже выполняется, то обновление не запускается.
+     *
+     * @param cacheKey уникальный ключ, идентифицирующий значение
+     * @param loader   функция загрузки значения, помещающая его в кэш
+     * @param executor исполнитель фоновых обновлений
+     */
+    public void refreshValue(CacheKey cacheKey, CacheValueLoader loader, Executor executor) {
+        var loading = new CompletableFuture<Object>();
+        if (loadingValues.putIfAbsent(cacheKey, loading) != null) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    loading.complete(load(loader));
+                } catch (Throwable e) {
+                    loading.completeExceptionally(e);
+                } finally {
+                    loadingValues.remove(cacheKey, loading);
+                }
+            });
+        } catch (RuntimeException e) {
+            loadingValues.remove(cacheKey, loading);
+            loading.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Очистка кэшированных данных с истёкшим сроком жизни.
+     * <p>
+     * Проверка на время 0 удаляет значения с нулевым сроком жизни, т.е. значения метода целиком.
+     * Незавершённый результат асинхронного метода удаляется по времени истечения, рассчитанному от начала вызова,
+     * и повторно в очередь не ставится.
+     * Если очистку уже выполняет другой поток, то вызов завершается без ожидания.
+     *
+     * @param expireTime время, на которое выполняется проверка
+     * @return true - разбор остановлен по размеру пакета и в очереди остались элементы для проверки
+     */
+    public boolean cleanExpireCache(long expireTime) {
+        if (expirePeriod == 0) {
+            if (expireTime == 0) {
+                metrics.recordEvictions(CacheRemovalCause.MUTATOR, clear());
+            }
+            return false;
+        }
+        if (expireTime == 0 || !expireLock.tryLock()) {
+            return false;
+        }
+        try {
+            if (offHeapStore != null) {
+                offHeapStore.cleanExpireCache(expireTime, cleanBatchSize);
+            }
+            ExpireNode expireNode;
+            var budget = cleanBatchSize;
+            while ((expireNode = expireQueue.peek()) != null && expireNode.expireTime < expireTime) {
+                if (budget-- == 0) {
+                    return true;
+                }
+                expireQueue.poll();
+                if (cacheValues.get(expireNode.cacheKey) != expireNode.cacheValue) {
+                    continue;
+                }
+                if (expireNode.cacheValue.isPending() || expireNode.cacheValue.isExpire(expireTime)) {
+                    if (removeValue(expireNode.cacheKey, expireNode.cacheValue)) {
+                        metrics.recordEviction(CacheRemovalCause.EXPIRED);
+                    }
+                } else {
+                    expireQueue.offer(new ExpireNode(expireNode.cacheKey, expireNode.cacheValue,
+                            expireNode.cacheValue.getExpireTime()));
+                }
+            }
+            return false;
+        } finally {
+            expireLock.unlock();
+        }
+    }
+
+    /**
+     * Удаление всех значений метода по запросу, см. {@link CacheHandle}.
+     */
+    public void invalidateAll() {
+        metrics.recordEvictions(CacheRemovalCause.EXPLICIT, clear());
+    }
+
+    /**
+     * Замена значения в кэше, если по ключу хранится именно заменяемое значение.
+     *
+     * @param cacheKey   уникальный ключ, идентифицирующий значение
+     * @param oldValue   заменяемое значение
+     * @param cacheValue новое значение
+     * @return true - значение заменено, иначе false
+     */
+    public boolean replaceValue(CacheKey cacheKey, CacheValue oldValue, CacheValue cacheValue) {
+        if (removeValue(cacheKey, oldValue)) {
+            putValue(cacheKey, cacheValue);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Удаление значения из кэша, если по ключу хранится именно это значение.
+     *
+     * @param cacheKey   уникальный ключ, идентифицирующий значение
+     * @param cacheValue объект кэшированного значения
+     * @return true - значение удалено, иначе false
+     */
+    public boolean removeValue(CacheKey cacheKey, CacheValue cacheValue) {
+        if (evictionPolicy != null) {
+            return evictionPolicy.removeValue(cacheKey, cacheValue);
+        } else {
+            return cacheValues.remove(cacheKey, cacheValue);
+        }
+    }
+
+    /**
+     * Удаление всех значений.
+     *
+     * @return количество значений перед удалением
+     */
+    private int clear() {
+        var size = offHeapStore != null ? offHeapStore.clear() : 0;
+        if (evictionPolicy != null) {
+            return size + evictionPolicy.clear();
+        } else {
+            size += cacheValues.size();
+            cacheValues.clear();
+            return size;
+        }
+    }
+
+    /**
+     * Элемент очереди истечения срока жизни кэшированных значений.
+     */
+    private static final class ExpireNode {
+        private final CacheKey cacheKey;
+        private final CacheValue cacheValue;
+        /**
+         * Время истечения срока жизни значения на момент постановки в очередь.
+         */
+        private final long expireTime;
+
+        private ExpireNode(CacheKey cacheKey, CacheValue cacheValue, long expireTime) {
+            this.cacheKey = cacheKey;
+            this.cacheValue = cacheValue;
+            this.expireTime = expireTime;
+        }
+    }
+}
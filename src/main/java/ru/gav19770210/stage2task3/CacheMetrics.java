@@ -0,0 +1,84 @@
+package ru.gav19770210.stage2task3;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Класс <b>CacheMetrics</b> накапливает статистику работы кэша одного метода.
+ * <p>
+ * Счётчики построены на <b>LongAdder</b>, поэтому одновременная запись из многих потоков не создаёт конкуренции.
+ * Время загрузки значений учитывается в гистограмме с интервалами по степеням двойки микросекунд.
+ */
+final class CacheMetrics {
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder loadSuccessCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final LongAdder totalLoadTime = new LongAdder();
+    private final LongAdder coalescedLoadCount = new LongAdder();
+    private final LongAdder[] evictionCounts = new LongAdder[CacheRemovalCause.values().length];
+    private final LongAdder[] loadTimeHistogram = new LongAdder[CacheStats.HISTOGRAM_SIZE];
+
+    public CacheMetrics() {
+        for (int i = 0; i < evictionCounts.length; i++) {
+            evictionCounts[i] = new LongAdder();
+        }
+        for (int i = 0; i < loadTimeHistogram.length; i++) {
+            loadTimeHistogram[i] = new LongAdder();
+        }
+    }
+
+    public void recordHit() {
+        hitCount.increment();
+    }
+
+    public void recordMiss() {
+        missCount.increment();
+    }
+
+    public void recordCoalescedLoad() {
+        coalescedLoadCount.increment();
+    }
+
+    /**
+     * Учёт загрузки значения.
+     *
+     * @param loadTime время загрузки в наносекундах
+     * @param success  true - загрузка завершена успешно, иначе false
+     */
+    public void recordLoad(long loadTime, boolean success) {
+        if (success) {
+            loadSuccessCount.increment();
+        } else {
+            loadFailureCount.increment();
+        }
+        totalLoadTime.add(loadTime);
+        loadTimeHistogram[CacheStats.histogramIndex(loadTime)].increment();
+    }
+
+    public void recordEviction(CacheRemovalCause cause) {
+        evictionCounts[cause.ordinal()].increment();
+    }
+
+    public void recordEvictions(CacheRemovalCause cause, long count) {
+        evictionCounts[cause.ordinal()].add(count);
+    }
+
+    /**
+     * Получение снимка статистики.
+     *
+     * @param entryCount текущее количество значений в кэше
+     * @return снимок статистики
+     */
+    public CacheStats snapshot(long entryCount) {
+        var evictions = new long[evictionCounts.length];
+        for (int i = 0; i < evictions.length; i++) {
+            evictions[i] = evictionCounts[i].sum();
+        }
+        var histogram = new long[loadTimeHistogram.length];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = loadTimeHistogram[i].sum();
+        }
+        return new CacheStats(hitCount.sum(), missCount.sum(), loadSuccessCount.sum(), loadFailureCount.sum(),
+                totalLoadTime.sum(), coalescedLoadCount.sum(), evictions, entryCount, histogram);
+    }
+}
@@ -0,0 +1,24 @@
+package ru.gav19770210.stage2task3;
+
+/**
+ * Монотонный интерфейс получения текущего времени.
+ * <p>
+ * Время отсчитывается по <b>System.nanoTime</b> от времени загрузки класса, поэтому перевод системных часов
+ * не приводит к массовому истечению срока жизни значений или к их бессрочному хранению.
+ * Значения близки к <b>System.currentTimeMillis</b> на момент загрузки класса и далее от него не зависят.
+ * <p>
+ * Используется по умолчанию при создании прокси-объектов через {@link CacheFactory}.
+ */
+public final class CacheMonotonicClock implements Clockable {
+    public static final CacheMonotonicClock INSTANCE = new CacheMonotonicClock();
+    private static final long START_MILLIS = System.currentTimeMillis();
+    private static final long START_NANOS = System.nanoTime();
+
+    private CacheMonotonicClock() {
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return START_MILLIS + (System.nanoTime() - START_NANOS) / 1_000_000;
+    }
+}
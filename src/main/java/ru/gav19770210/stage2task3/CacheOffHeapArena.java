@@ -0,0 +1,183 @@
+package ru.gav19770210.stage2task3;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Класс <b>CacheOffHeapArena</b> распределяет память вне кучи для значений {@link CacheOffHeapStore}.
+ * <p>
+ * Память выделяется сегментами через {@link ByteBuffer#allocateDirect(int)} по мере заполнения
+ * и делится на блоки одного размера. Значение занимает необходимое количество блоков, не обязательно соседних,
+ * поэтому освобождённые блоки используются повторно без фрагментации, а выделение памяти под каждое значение
+ * не выполняется. Сегменты не освобождаются до удаления хранилища.
+ * <p>
+ * Класс не является потокобезопасным, синхронизация выполняется хранилищем.
+ */
+final class CacheOffHeapArena {
+    /**
+     * Размер блока в байтах.
+     */
+    static final int BLOCK_SIZE = 256;
+    /**
+     * Количество блоков в сегменте, размер сегмента - 1 Мб.
+     */
+    private static final int SEGMENT_BLOCKS = 4096;
+    private static final int[] NO_BLOCKS = new int[0];
+    /**
+     * Максимальное количество блоков.
+     */
+    private final int blockCount;
+    /**
+     * Сегменты памяти, null - сегмент ещё не выделен.
+     */
+    private final ByteBuffer[] segments;
+    /**
+     * Стек освобождённых блоков.
+     */
+    private int[] freeBlocks = new int[16];
+    private int freeCount;
+    /**
+     * Номер первого блока, который ещё не выделялся.
+     */
+    private int nextBlock;
+
+    /**
+     * Размер памяти округляется вниз до целого количества блоков, поэтому заданный размер не превышается.
+     * Последний сегмент выделяется только под оставшиеся блоки.
+     *
+     * @param maxBytes максимальный размер памяти в байтах, не меньше размера блока
+     */
+    public CacheOffHeapArena(long maxBytes) {
+        if (maxBytes < BLOCK_SIZE) {
+            throw new IllegalArgumentException("Размер хранилища вне кучи меньше размера блока " + BLOCK_SIZE
+                    + " байт: " + maxBytes);
+        }
+        this.blockCount = (int) Long.min(Integer.MAX_VALUE - SEGMENT_BLOCKS, maxBytes / BLOCK_SIZE);
+        this.segments = new ByteBuffer[(blockCount + SEGMENT_BLOCKS - 1) / SEGMENT_BLOCKS];
+    }
+
+    /**
+     * Количество блоков для значения заданного размера.
+     *
+     * @param length размер значения в байтах
+     * @return количество блоков
+     */
+    public static int getBlockCount(int length) {
+        return (length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    /**
+     * Проверка, может ли значение заданного размера быть размещено при освобождении всех блоков.
+     *
+     * @param length размер значения в байтах
+     * @return true - значение помещается в память, иначе false
+     */
+    public boolean fits(int length) {
+        return getBlockCount(length) <= blockCount;
+    }
+
+    /**
+     * Проверка, есть ли свободные блоки для значения заданного размера.
+     *
+     * @param length размер значения в байтах
+     * @return true - свободных блоков достаточно, иначе false
+     */
+    public boolean hasRoom(int length) {
+        return getBlockCount(length) <= freeCount + blockCount - nextBlock;
+    }
+
+    /**
+     * Запись значения в свободные блоки.
+     * Перед записью наличие свободных блоков проверяется через {@link #hasRoom(int)}.
+     *
+     * @param bytes значение
+     * @return номера блоков, занятых значением
+     */
+    public int[] write(byte[] bytes) {
+        var count = getBlockCount(bytes.length);
+        if (count == 0) {
+            return NO_BLOCKS;
+        }
+        var blocks = new int[count];
+        for (int i = 0; i < count; i++) {
+            var block = freeCount > 0 ? freeBlocks[--freeCount] : nextBlock++;
+            var offset = i * BLOCK_SIZE;
+            getSegment(block).put(getOffset(block), bytes, offset, Integer.min(BLOCK_SIZE, bytes.length - offset));
+            blocks[i] = block;
+        }
+        return blocks;
+    }
+
+    /**
+     * Чтение значения из блоков.
+     *
+     * @param blocks номера блоков, занятых значением
+     * @param length размер значения в байтах
+     * @return значение
+     */
+    public byte[] read(int[] blocks, int length) {
+        var bytes = new byte[length];
+        for (int i = 0; i < blocks.length; i++) {
+            var offset = i * BLOCK_SIZE;
+            segments[blocks[i] / SEGMENT_BLOCKS].get(getOffset(blocks[i]), bytes, offset,
+                    Integer.min(BLOCK_SIZE, length - offset));
+        }
+        return bytes;
+    }
+
+    /**
+     * Освобождение блоков значения.
+     *
+     * @param blocks номера блоков, занятых значением
+     */
+    public void free(int[] blocks) {
+        if (freeCount + blocks.length > freeBlocks.length) {
+            freeBlocks = Arrays.copyOf(freeBlocks, Integer.max(freeBlocks.length * 2, freeCount + blocks.length));
+        }
+        System.arraycopy(blocks, 0, freeBlocks, freeCount, blocks.length);
+        freeCount += blocks.length;
+    }
+
+    /**
+     * Освобождение всех блоков, выделенные сегменты сохраняются для повторного использования.
+     */
+    public void clear() {
+        freeCount = 0;
+        nextBlock = 0;
+    }
+
+    /**
+     * @return размер занятых блоков в байтах
+     */
+    public long getUsedBytes() {
+        return (long) (nextBlock - freeCount) * BLOCK_SIZE;
+    }
+
+    /**
+     * @return размер выделенных сегментов в байтах
+     */
+    public long getAllocatedBytes() {
+        var allocated = 0L;
+        for (var segment : segments) {
+            if (segment != null) {
+                allocated += segment.capacity();
+            }
+        }
+        return allocated;
+    }
+
+    private ByteBuffer getSegment(int block) {
+        var index = block / SEGMENT_BLOCKS;
+        var segment = segments[index];
+        if (segment == null) {
+            var blocks = Integer.min(SEGMENT_BLOCKS, blockCount - index * SEGMENT_BLOCKS);
+            segment = ByteBuffer.allocateDirect(blocks * BLOCK_SIZE);
+            segments[index] = segment;
+        }
+        return segment;
+    }
+
+    private static int getOffset(int block) {
+        return (block % SEGMENT_BLOCKS) * BLOCK_SIZE;
+    }
+}
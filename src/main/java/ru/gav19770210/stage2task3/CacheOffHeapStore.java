@@ -0,0 +1,241 @@
+package ru.gav19770210.stage2task3;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Класс <b>CacheOffHeapStore</b> реализует хранение значений метода вне кучи.
+ * <p>
+ * Значения, вытесненные из кэша метода, преобразуются в массив байт и копируются в блоки памяти,
+ * распределяемые {@link CacheOffHeapArena}. В куче остаются только ключ, номера блоков и времена значения,
+ * поэтому объём данных, обходимых сборщиком мусора, не зависит от размера значений.
+ * При обращении значение восстанавливается и удаляется из хранилища.
+ * <p>
+ * Суммарный размер блоков ограничен, при превышении удаляются значения, к которым дольше всего не было обращений.
+ * Значения с истёкшим сроком жизни удаляются по собственной очереди хранилища, упорядоченной по времени истечения,
+ * поэтому очистка проверяет только значения с истёкшим сроком жизни.
+ */
+final class CacheOffHeapStore {
+    /**
+     * Максимальный суммарный размер значений в байтах.
+     */
+    private final long maxBytes;
+    private final CacheSerializer serializer;
+    private final CacheMetrics metrics;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final CacheOffHeapArena arena;
+    /**
+     * Значения в порядке обращения к ним.
+     */
+    private final LinkedHashMap<CacheKey, OffHeapValue> offHeapValues = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * Очередь значений с ограниченным сроком жизни в порядке времени истечения.
+     * Удалённые из хранилища значения остаются в очереди до её разбора.
+     */
+    private final PriorityQueue<OffHeapValue> expireQueue =
+            new PriorityQueue<>(Comparator.comparingLong(offHeapValue -> offHeapValue.expireTime));
+
+    public CacheOffHeapStore(long maxBytes, CacheSerializer serializer, CacheMetrics metrics) {
+        this.maxBytes = maxBytes;
+        this.serializer = serializer;
+        this.metrics = metrics;
+        this.arena = new CacheOffHeapArena(maxBytes);
+    }
+
+    /**
+     * Помещение значения в хранилище.
+     * Если значение не удалось преобразовать или оно больше размера хранилища, то оно считается вытесненным.
+     *
+     * @param cacheKey   уникальный ключ, идентифицирующий значение
+     * @param cacheValue объект кэшированного значения
+     */
+    public void putValue(CacheKey cacheKey, CacheValue cacheValue) {
+        byte[] bytes;
+        try {
+            bytes = serializer.serialize(cacheValue.getValue());
+        } catch (RuntimeException e) {
+            metrics.recordEviction(CacheRemovalCause.SIZE);
+            return;
+        }
+        if (bytes.length > maxBytes || !arena.fits(bytes.length)) {
+            metrics.recordEviction(CacheRemovalCause.SIZE);
+            return;
+        }
+        lock.lock();
+        try {
+            var previous = offHeapValues.remove(cacheKey);
+            if (previous != null) {
+                release(previous);
+            }
+            var iterator = offHeapValues.values().iterator();
+            while (!arena.hasRoom(bytes.length) && iterator.hasNext()) {
+                var eldest = iterator.next();
+                iterator.remove();
+                release(eldest);
+                metrics.recordEviction(CacheRemovalCause.SIZE);
+            }
+            var offHeapValue = new OffHeapValue(cacheKey, arena.write(bytes), bytes.length, cacheValue);
+            offHeapValues.put(cacheKey, offHeapValue);
+            if (offHeapValue.expirePeriod > 0) {
+                if (expireQueue.size() > 2 * offHeapValues.size()) {
+                    expireQueue.removeIf(value -> value.removed);
+                }
+                expireQueue.offer(offHeapValue);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Извлечение значения из хранилища.
+     *
+     * @param cacheKey уникальный ключ, идентифицирующий значение
+     * @return восстановленное кэшированное значение, null - значения нет или его не удалось восстановить
+     */
+    public CacheValue removeValue(CacheKey cacheKey) {
+        OffHeapValue offHeapValue;
+        byte[] bytes;
+        lock.lock();
+        try {
+            offHeapValue = offHeapValues.remove(cacheKey);
+            if (offHeapValue == null) {
+                return null;
+            }
+            bytes = arena.read(offHeapValue.blocks, offHeapValue.length);
+            release(offHeapValue);
+        } finally {
+            lock.unlock();
+        }
+        try {
+            return new CacheValue(serializer.deserialize(bytes), offHeapValue.cacheTime, offHeapValue.loadTime,
+                    offHeapValue.expirePeriod, offHeapValue.stalePeriod);
+        } catch (RuntimeException e) {
+            metrics.recordEviction(CacheRemovalCause.SIZE);
+            return null;
+        }
+    }
+
+    /**
+     * Удаление значений с истёкшим сроком жизни в порядке времени истечения.
+     *
+     * @param expireTime время, на которое выполняется проверка
+     * @param budget     максимальное количество проверяемых значений
+     */
+    public void cleanExpireCache(long expireTime, int budget) {
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            OffHeapValue offHeapValue;
+            while (budget-- > 0 && (offHeapValue = expireQueue.peek()) != null
+                    && offHeapValue.expireTime < expireTime) {
+                expireQueue.poll();
+                if (!offHeapValue.removed) {
+                    offHeapValues.remove(offHeapValue.cacheKey);
+                    release(offHeapValue);
+                    metrics.recordEviction(CacheRemovalCause.EXPIRED);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Удаление всех значений.
+     *
+     * @return количество значений перед удалением
+     */
+    public int clear() {
+        lock.lock();
+        try {
+            var size = offHeapValues.size();
+            offHeapValues.values().forEach(offHeapValue -> offHeapValue.removed = true);
+            offHeapValues.clear();
+            expireQueue.clear();
+            arena.clear();
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return offHeapValues.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return размер блоков, занятых значениями, в байтах
+     */
+    public long getUsedBytes() {
+        lock.lock();
+        try {
+            return arena.getUsedBytes();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return размер памяти, выделенной вне кучи, в байтах
+     */
+    public long getAllocatedBytes() {
+        lock.lock();
+        try {
+            return arena.getAllocatedBytes();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Освобождение блоков значения, удалённого из коллекции значений.
+     */
+    private void release(OffHeapValue offHeapValue) {
+        offHeapValue.removed = true;
+        arena.free(offHeapValue.blocks);
+    }
+
+    /**
+     * Значение, хранимое вне кучи, с временами исходного кэшированного значения.
+     */
+    private static final class OffHeapValue {
+        private final CacheKey cacheKey;
+        /**
+         * Номера блоков, занятых значением.
+         */
+        private final int[] blocks;
+        /**
+         * Размер значения в байтах.
+         */
+        private final int length;
+        private final long cacheTime;
+        private final long loadTime;
+        private final long expirePeriod;
+        private final long stalePeriod;
+        private final long expireTime;
+        /**
+         * Признак удаления значения из хранилища, блоки значения освобождены.
+         */
+        private boolean removed;
+
+        private OffHeapValue(CacheKey cacheKey, int[] blocks, int length, CacheValue cacheValue) {
+            this.cacheKey = cacheKey;
+            this.blocks = blocks;
+            this.length = length;
+            this.cacheTime = cacheValue.getCacheTime();
+            this.loadTime = cacheValue.getLoadTime();
+            this.expirePeriod = cacheValue.getExpirePeriod();
+            this.stalePeriod = cacheValue.getStalePeriod();
+            this.expireTime = cacheValue.getExpireTime();
+        }
+    }
+}
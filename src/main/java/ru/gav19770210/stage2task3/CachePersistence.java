@@ -0,0 +1,38 @@
+package ru.gav19770210.stage2task3;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Настройки сохранения кэшированных данных проксируемого объекта в файл.
+ * <p>
+ * При создании прокси-объекта из файла загружаются значения, срок жизни которых не истёк,
+ * далее содержимое кэша периодически записывается в файл.
+ * Файл задаётся на класс, поэтому поддерживается только область хранилища {@link CacheScope#CLASS}:
+ * в файл записывается общее хранилище всех прокси-объектов класса, а загрузка выполняется один раз
+ * при создании первого прокси-объекта. Область <b>CLASS</b> допускает только тип отслеживания состояния
+ * <b>FIELDS</b>: состояние объекта входит в ключ и значение из файла используется,
+ * только если состояние объекта совпадает с сохранённым.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CachePersistence {
+    /**
+     * Путь к файлу снимка кэшированных данных.
+     */
+    String file();
+
+    /**
+     * Период записи снимка в миллисекундах.
+     * <p>Если задано 0, то снимок записывается только вызовом {@link CacheFactory#saveSnapshot(Object)}.
+     */
+    long period() default 60000;
+
+    /**
+     * Класс преобразования ключей и значений для записи в файл.
+     * <p>По умолчанию используется стандартная сериализация Java {@link CacheJavaSerializer}.
+     */
+    Class<? extends CacheSerializer> serializer() default CacheJavaSerializer.class;
+}
@@ -0,0 +1,228 @@
+package ru.gav19770210.stage2task3;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.description.modifier.FieldManifestation;
+import net.bytebuddy.description.modifier.Visibility;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.dynamic.scaffold.subclass.ConstructorStrategy;
+import net.bytebuddy.implementation.FieldAccessor;
+import net.bytebuddy.implementation.Implementation;
+import net.bytebuddy.implementation.MethodCall;
+import net.bytebuddy.implementation.bytecode.assign.Assigner;
+import net.bytebuddy.matcher.ElementMatchers;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Класс <b>CacheProxyGenerator</b> генерирует классы прокси-объектов вместо <b>java.lang.reflect.Proxy</b>.
+ * <p>
+ * Класс прокси-объекта генерируется один раз для класса исходного объекта в его пакете.
+ * Каждый метод интерфейсов исходного объекта получает своё закрытое неизменяемое поле с обработчиком
+ * вызовов этого метода ({@link CacheMethodHandler}), которое заполняется конструктором прокси-объекта.
+ * Метод прокси-объекта вызывает обработчик напрямую: без поиска метода по коллекции и без передачи
+ * прокси-объекта и метода, а возвращаемые примитивные значения распаковываются сгенерированным кодом.
+ * Параметры вызова передаются массивом, так как из них формируется ключ кэша.
+ */
+final class CacheProxyGenerator {
+    private static final String HANDLER_FIELD_PREFIX = "cacheMethodHandler$";
+    private static final String INVOCATION_HANDLER_FIELD = "cacheInvocationHandler$";
+    /**
+     * Максимальное количество параметров конструктора, ограниченное JVM с учётом this.
+     */
+    private static final int MAX_CONSTRUCTOR_PARAMETERS = 254;
+    /**
+     * Счётчик для уникальности имён генерируемых классов.
+     */
+    private static final AtomicInteger PROXY_CLASS_COUNTER = new AtomicInteger();
+    /**
+     * Сгенерированные классы прокси-объектов в разрезе классов исходных объектов.
+     */
+    private static final ClassValue<ProxyClass> PROXY_CLASSES = new ClassValue<>() {
+        @Override
+        protected ProxyClass computeValue(Class<?> objectClass) {
+            return generateProxyClass(objectClass);
+        }
+    };
+    /**
+     * Функции чтения обработчика вызовов в разрезе классов объектов,
+     * для классов, не сгенерированных генератором, функция возвращает null.
+     */
+    private static final ClassValue<MethodHandle> HANDLER_GETTERS = new ClassValue<>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> proxyClass) {
+            return createHandlerGetter(proxyClass);
+        }
+    };
+    private static final MethodType HANDLER_GETTER_TYPE = MethodType.methodType(InvocationHandler.class, Object.class);
+
+    private CacheProxyGenerator() {
+    }
+
+    /**
+     * Создание прокси-объекта сгенерированного класса.
+     *
+     * @param cachedObject исходный объект
+     * @param handler      обработчик вызовов методов прокси-объекта
+     * @return прокси-объект
+     */
+    public static Object newProxyInstance(Object cachedObject, CacheInvocationHandler handler) {
+        var proxyClass = PROXY_CLASSES.get(cachedObject.getClass());
+        var constructorArgs = new Object[proxyClass.methods.size() + 1];
+        constructorArgs[0] = handler;
+        for (int i = 0; i < proxyClass.methods.size(); i++) {
+            constructorArgs[i + 1] = handler.getMethodHandler(proxyClass.methods.get(i));
+        }
+        try {
+            return proxyClass.constructor.invokeWithArguments(constructorArgs);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Не удалось создать прокси-объект для " + cachedObject.getClass(), e);
+        }
+    }
+
+    /**
+     * Получение обработчика вызовов прокси-объекта сгенерированного класса.
+     *
+     * @param proxy прокси-объект
+     * @return обработчик вызовов, null - объект не является прокси-объектом сгенерированного класса
+     */
+    public static CacheInvocationHandler getInvocationHandler(Object proxy) {
+        try {
+            var handler = (InvocationHandler) HANDLER_GETTERS.get(proxy.getClass()).invokeExact(proxy);
+            return handler instanceof CacheInvocationHandler ? (CacheInvocationHandler) handler : null;
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Ошибка чтения обработчика вызовов прокси-объекта", e);
+        }
+    }
+
+    private static MethodHandle createHandlerGetter(Class<?> proxyClass) {
+        if (proxyClass.getName().contains("$CacheProxy$")) {
+            try {
+                var lookup = MethodHandles.privateLookupIn(proxyClass, MethodHandles.lookup());
+                return lookup.findGetter(proxyClass, INVOCATION_HANDLER_FIELD, InvocationHandler.class)
+                        .asType(HANDLER_GETTER_TYPE);
+            } catch (ReflectiveOperationException ignored) {
+            }
+        }
+        return MethodHandles.dropArguments(MethodHandles.constant(InvocationHandler.class, null), 0, Object.class);
+    }
+
+    private static ProxyClass generateProxyClass(Class<?> objectClass) {
+        var interfaces = CacheClassMetadata.forClass(objectClass).getProxyInterfaces();
+        var methods = getProxyMethods(interfaces);
+        if (methods.size() + 1 > MAX_CONSTRUCTOR_PARAMETERS) {
+            throw new IllegalArgumentException("Слишком много методов для генерации прокси-объекта " + objectClass);
+        }
+
+        var constructorParameters = new ArrayList<Class<?>>();
+        constructorParameters.add(InvocationHandler.class);
+        Implementation.Composable constructor;
+        try {
+            constructor = MethodCall.invoke(Object.class.getConstructor())
+                    .andThen(FieldAccessor.ofField(INVOCATION_HANDLER_FIELD).setsArgumentAt(0));
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+        var handlerInvoke = getHandlerInvokeMethod();
+
+        DynamicType.Builder<Object> builder = new ByteBuddy()
+                .subclass(Object.class, ConstructorStrategy.Default.NO_CONSTRUCTORS)
+                .implement(interfaces)
+                .name(objectClass.getName() + "$CacheProxy$" + PROXY_CLASS_COUNTER.incrementAndGet())
+                .defineField(INVOCATION_HANDLER_FIELD, InvocationHandler.class,
+                        Visibility.PRIVATE, FieldManifestation.FINAL);
+        for (int i = 0; i < methods.size(); i++) {
+            var fieldName = HANDLER_FIELD_PREFIX + i;
+            constructorParameters.add(CacheMethodHandler.class);
+            constructor = constructor.andThen(FieldAccessor.ofField(fieldName).setsArgumentAt(i + 1));
+            builder = builder
+                    .defineField(fieldName, CacheMethodHandler.class, Visibility.PRIVATE, FieldManifestation.FINAL)
+                    .method(ElementMatchers.is(methods.get(i)))
+                    .intercept(MethodCall.invoke(handlerInvoke)
+                            .onField(fieldName)
+                            .withArgumentArray()
+                            .withAssigner(Assigner.DEFAULT, Assigner.Typing.DYNAMIC));
+        }
+        builder = builder.defineConstructor(Visibility.PUBLIC)
+                .withParameters(constructorParameters)
+                .intercept(constructor);
+
+        try {
+            var lookup = MethodHandles.privateLookupIn(objectClass, MethodHandles.lookup());
+            var proxyClass = builder.make()
+                    .load(objectClass.getClassLoader(), ClassLoadingStrategy.UsingLookup.of(lookup))
+                    .getLoaded();
+            var constructorHandle = lookup.findConstructor(proxyClass,
+                    MethodType.methodType(void.class, constructorParameters));
+            return new ProxyClass(constructorHandle, methods);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Не удалось сгенерировать класс прокси-объекта для " + objectClass, e);
+        }
+    }
+
+    private static Method getHandlerInvokeMethod() {
+        try {
+            return CacheMethodHandler.class.getMethod("invoke", Object[].class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Методы интерфейсов и методы equals, hashCode, toString, без повторов по сигнатуре.
+     */
+    private static List<Method> getProxyMethods(Class<?>[] interfaces) {
+        var methods = new LinkedHashMap<String, Method>();
+        try {
+            for (var method : List.of(Object.class.getMethod("equals", Object.class),
+                    Object.class.getMethod("hashCode"),
+                    Object.class.getMethod("toString"))) {
+                methods.put(getSignature(method), method);
+            }
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+        for (var objectInterface : interfaces) {
+            for (var method : objectInterface.getMethods()) {
+                methods.putIfAbsent(getSignature(method), method);
+            }
+        }
+        return new ArrayList<>(methods.values());
+    }
+
+    private static String getSignature(Method method) {
+        return method.getName() + Arrays.toString(method.getParameterTypes());
+    }
+
+    /**
+     * Сгенерированный класс прокси-объекта.
+     */
+    private static final class ProxyClass {
+        /**
+         * Конструктор прокси-объекта с параметрами: обработчик вызовов и обработчики методов.
+         */
+        private final MethodHandle constructor;
+        /**
+         * Методы прокси-объекта в порядке параметров конструктора.
+         */
+        private final List<Method> methods;
+
+        private ProxyClass(MethodHandle constructor, List<Method> methods) {
+            this.constructor = constructor;
+            this.methods = methods;
+        }
+    }
+}
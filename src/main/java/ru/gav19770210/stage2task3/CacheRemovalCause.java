@@ -0,0 +1,11 @@
+package ru.gav19770210.stage2task3;
+
+/**
+ * Причина удаления значения из кэша.
+ */
+public enum CacheRemovalCause {
+    EXPIRED,  // истёк срок жизни значения
+    MUTATOR,  // вызван метод с аннотацией @Mutator
+    SIZE,     // значение вытеснено при превышении ограничения размера кэша
+    EXPLICIT  // значение удалено вызовом методов CacheHandle
+}
@@ -0,0 +1,9 @@
+package ru.gav19770210.stage2task3;
+
+/**
+ * Область хранилища кэшированных данных.
+ */
+public enum CacheScope {
+    INSTANCE, // у каждого прокси-объекта своё хранилище
+    CLASS     // прокси-объекты одного класса разделяют одно хранилище, ключ включает состояние объекта
+}
@@ -0,0 +1,25 @@
+package ru.gav19770210.stage2task3;
+
+/**
+ * Интерфейс преобразования кэшированного значения в массив байт и обратно.
+ * <p>
+ * Используется для хранения значений метода вне кучи, см. {@link Cache#offHeapMaxBytes()}.
+ * Реализация должна иметь открытый конструктор без параметров.
+ */
+public interface CacheSerializer {
+    /**
+     * Преобразование значения в массив байт.
+     *
+     * @param value кэшированное значение
+     * @return массив байт, при невозможности преобразования выбрасывается непроверяемое исключение
+     */
+    byte[] serialize(Object value);
+
+    /**
+     * Восстановление значения из массива байт.
+     *
+     * @param bytes массив байт, полученный методом {@link #serialize(Object)}
+     * @return кэшированное значение
+     */
+    Object deserialize(byte[] bytes);
+}
@@ -0,0 +1,86 @@
+package ru.gav19770210.stage2task3;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+
+/**
+ * Клиент сервера общего хранилища кэшированных данных {@link CacheSharedServer}.
+ * <p>
+ * Использует одно подключение, запросы из разных потоков выполняются последовательно.
+ */
+public class CacheSharedClient implements CacheSharedStore, AutoCloseable {
+    private final Socket socket;
+    private final DataInputStream input;
+    private final DataOutputStream output;
+
+    public CacheSharedClient(String host, int port) {
+        try {
+            this.socket = new Socket(host, port);
+            this.socket.setTcpNoDelay(true);
+            this.input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось подключиться к серверу общего хранилища " + host + ":" + port, e);
+        }
+    }
+
+    @Override
+    public synchronized byte[] get(String region, byte[] key) {
+        try {
+            writeRequest(CacheSharedServer.OPERATION_GET, region, key);
+            output.flush();
+            var length = input.readInt();
+            if (length < 0) {
+                return null;
+            }
+            var value = new byte[length];
+            input.readFully(value);
+            return value;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка получения значения из общего хранилища", e);
+        }
+    }
+
+    @Override
+    public synchronized void put(String region, byte[] key, byte[] value, long expirePeriod) {
+        try {
+            writeRequest(CacheSharedServer.OPERATION_PUT, region, key);
+            CacheSharedServer.writeBytes(output, value);
+            output.writeLong(expirePeriod);
+            output.flush();
+            input.readByte();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка помещения значения в общее хранилище", e);
+        }
+    }
+
+    @Override
+    public synchronized void invalidate(String region) {
+        try {
+            writeRequest(CacheSharedServer.OPERATION_INVALIDATE, region, new byte[0]);
+            output.flush();
+            input.readByte();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка удаления значений из общего хранилища", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void writeRequest(byte operation, String region, byte[] key) throws IOException {
+        output.writeByte(operation);
+        output.writeUTF(region);
+        CacheSharedServer.writeBytes(output, key);
+    }
+}
@@ -0,0 +1,58 @@
+package ru.gav19770210.stage2task3;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Общее хранилище кэшированных данных в памяти текущей JVM.
+ * <p>
+ * Используется сервером {@link CacheSharedServer} и для проверки работы кэша второго уровня в тестах.
+ * Срок жизни значений отсчитывается по системному времени.
+ */
+public class CacheSharedMemoryStore implements CacheSharedStore {
+    private final Map<String, Map<ByteBuffer, SharedValue>> regions = new ConcurrentHashMap<>();
+
+    @Override
+    public byte[] get(String region, byte[] key) {
+        var values = regions.get(region);
+        if (values == null) {
+            return null;
+        }
+        var sharedKey = ByteBuffer.wrap(key);
+        var sharedValue = values.get(sharedKey);
+        if (sharedValue == null) {
+            return null;
+        }
+        if (sharedValue.expireTime > 0 && sharedValue.expireTime < System.currentTimeMillis()) {
+            values.remove(sharedKey, sharedValue);
+            return null;
+        }
+        return sharedValue.value;
+    }
+
+    @Override
+    public void put(String region, byte[] key, byte[] value, long expirePeriod) {
+        var expireTime = expirePeriod > 0 ? System.currentTimeMillis() + expirePeriod : 0;
+        regions.computeIfAbsent(region, name -> new ConcurrentHashMap<>())
+                .put(ByteBuffer.wrap(key.clone()), new SharedValue(value.clone(), expireTime));
+    }
+
+    @Override
+    public void invalidate(String region) {
+        regions.remove(region);
+    }
+
+    private static final class SharedValue {
+        private final byte[] value;
+        /**
+         * Время истечения срока жизни значения, 0 - срок жизни не ограничен.
+         */
+        private final long expireTime;
+
+        private SharedValue(byte[] value, long expireTime) {
+            this.value = value;
+            this.expireTime = expireTime;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package ru.gav19770210.stage2task3;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Сервер общего хранилища кэшированных данных на локальном сетевом интерфейсе.
+ * <p>
+ * Заменяет распределённый кэш при разработке и тестировании: несколько JVM подключаются к серверу
+ * через {@link CacheSharedClient} и разделяют значения, хранящиеся в {@link CacheSharedMemoryStore}.
+ * Каждое подключение обслуживается отдельным потоком, запросы подключения выполняются последовательно.
+ * <p>
+ * Протокол: код операции (1 байт), область (UTF), ключ (длина и байты),
+ * для операции помещения дополнительно значение (длина и байты) и срок жизни (long).
+ * Ответ на получение - длина значения (-1 - значения нет) и байты, на остальные операции - 1 байт подтверждения.
+ */
+public class CacheSharedServer implements AutoCloseable {
+    static final byte OPERATION_GET = 1;
+    static final byte OPERATION_PUT = 2;
+    static final byte OPERATION_INVALIDATE = 3;
+    private final CacheSharedStore store;
+    private final ServerSocket serverSocket;
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Запуск сервера на свободном порту.
+     */
+    public CacheSharedServer() {
+        this(0, new CacheSharedMemoryStore());
+    }
+
+    /**
+     * Запуск сервера.
+     *
+     * @param port  порт, 0 - свободный порт
+     * @param store хранилище значений сервера
+     */
+    public CacheSharedServer(int port, CacheSharedStore store) {
+        this.store = store;
+        try {
+            this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось запустить сервер общего хранилища", e);
+        }
+        startThread("cache-shared-server", this::accept);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+        }
+        for (var socket : sockets) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                var socket = serverSocket.accept();
+                sockets.add(socket);
+                startThread("cache-shared-connection", () -> serve(socket));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             var input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             var output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            while (true) {
+                var operation = input.readByte();
+                var region = input.readUTF();
+                var key = readBytes(input);
+                switch (operation) {
+                    case OPERATION_GET -> {
+                        var value = store.get(region, key);
+                        if (value == null) {
+                            output.writeInt(-1);
+                        } else {
+                            writeBytes(output, value);
+                        }
+                    }
+                    case OPERATION_PUT -> {
+                        var value = readBytes(input);
+                        store.put(region, key, value, input.readLong());
+                        output.writeByte(1);
+                    }
+                    case OPERATION_INVALIDATE -> {
+                        store.invalidate(region);
+                        output.writeByte(1);
+                    }
+                    default -> throw new IOException("Неизвестная операция " + operation);
+                }
+                output.flush();
+            }
+        } catch (IOException ignored) {
+        } finally {
+            sockets.remove(socket);
+        }
+    }
+
+    static byte[] readBytes(DataInputStream input) throws IOException {
+        var bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return bytes;
+    }
+
+    static void writeBytes(DataOutputStream output, byte[] bytes) throws IOException {
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static void startThread(String name, Runnable runnable) {
+        var thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
@@ -0,0 +1,42 @@
+package ru.gav19770210.stage2task3;
+
+/**
+ * Интерфейс общего хранилища кэшированных данных второго уровня, разделяемого несколькими JVM.
+ * <p>
+ * Локальное хранилище прокси-объекта используется как ближний кэш: при его промахе значение ищется
+ * в общем хранилище, и только при отсутствии значения в нём вызывается метод проксируемого объекта.
+ * Значения кэшируемых методов хранятся в областях, область соответствует методу.
+ * Ключи и значения передаются в виде массивов байт, преобразованных {@link CacheSerializer}.
+ * <p>
+ * Общее хранилище подключается методом {@link CacheFactory#setSharedStore(CacheSharedStore)}
+ * и используется для методов с параметром <b>shared</b> аннотации <b>@Cache</b>.
+ * При ошибке обращения к общему хранилищу выбрасывается непроверяемое исключение,
+ * в этом случае значение вычисляется локально.
+ */
+public interface CacheSharedStore {
+    /**
+     * Получение значения.
+     *
+     * @param region область значений метода
+     * @param key    ключ значения
+     * @return значение, null - значения нет или срок его жизни истёк
+     */
+    byte[] get(String region, byte[] key);
+
+    /**
+     * Помещение значения.
+     *
+     * @param region       область значений метода
+     * @param key          ключ значения
+     * @param value        значение
+     * @param expirePeriod срок жизни значения в миллисекундах, 0 - до удаления области
+     */
+    void put(String region, byte[] key, byte[] value, long expirePeriod);
+
+    /**
+     * Удаление всех значений области, выполняется при вызове метода с аннотацией <b>@Mutator</b>.
+     *
+     * @param region область значений метода
+     */
+    void invalidate(String region);
+}
@@ -0,0 +1,106 @@
+package ru.gav19770210.stage2task3;
+
+import java.lang.reflect.Method;
+
+/**
+ * Класс <b>CacheSharedTier</b> связывает кэшируемый метод с общим хранилищем второго уровня.
+ * <p>
+ * Общее хранилище задаётся одно на JVM. Ключи формируются только по значениям полей объекта:
+ * номер версии состояния не переносим между JVM, поэтому при типе отслеживания <b>VERSION</b>
+ * общее хранилище не используется. Вызов метода-мутатора удаляет из общего хранилища значения методов
+ * с нулевым сроком жизни, как и из локального кэша: такие значения действительны только до вызова мутатора.
+ * Ошибки общего хранилища и преобразования значений не прерывают вызов,
+ * значение в этом случае вычисляется локально.
+ */
+final class CacheSharedTier {
+    /**
+     * Признак отсутствия значения в общем хранилище.
+     */
+    static final Object NOT_FOUND = new Object();
+    /**
+     * Общее хранилище кэшированных данных, null - не подключено.
+     */
+    private static volatile CacheSharedStore sharedStore;
+    /**
+     * Область значений метода в общем хранилище.
+     */
+    private final String region;
+    private final CacheSerializer serializer;
+
+    public CacheSharedTier(Method method, CacheSerializer serializer) {
+        this.region = method.toString();
+        this.serializer = serializer;
+    }
+
+    static void setSharedStore(CacheSharedStore store) {
+        sharedStore = store;
+    }
+
+    /**
+     * Формирование ключа значения в общем хранилище.
+     *
+     * @param cacheKey уникальный ключ, идентифицирующий значение
+     * @return ключ в общем хранилище, null - общее хранилище не используется для ключа
+     */
+    public byte[] createKey(CacheKey cacheKey) {
+        if (sharedStore == null || cacheKey.getStateFields() == null) {
+            return null;
+        }
+        try {
+            return serializer.serialize(new Object[]{cacheKey.getParameters(), cacheKey.getStateFields()});
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Получение значения из общего хранилища.
+     *
+     * @param sharedKey ключ в общем хранилище
+     * @return значение, {@link #NOT_FOUND} - значения нет или его не удалось получить
+     */
+    public Object getValue(byte[] sharedKey) {
+        var store = sharedStore;
+        if (store == null) {
+            return NOT_FOUND;
+        }
+        try {
+            var bytes = store.get(region, sharedKey);
+            return bytes != null ? serializer.deserialize(bytes) : NOT_FOUND;
+        } catch (RuntimeException e) {
+            return NOT_FOUND;
+        }
+    }
+
+    /**
+     * Помещение значения в общее хранилище.
+     *
+     * @param sharedKey    ключ в общем хранилище
+     * @param value        значение
+     * @param expirePeriod срок жизни значения
+     */
+    public void putValue(byte[] sharedKey, Object value, long expirePeriod) {
+        var store = sharedStore;
+        if (store == null) {
+            return;
+        }
+        try {
+            store.put(region, sharedKey, serializer.serialize(value), expirePeriod);
+        } catch (RuntimeException ignored) {
+        }
+    }
+
+    /**
+     * Удаление значений метода из общего хранилища.
+     */
+    public void invalidate() {
+        var store = sharedStore;
+        if (store == null) {
+            return;
+        }
+        try {
+            store.invalidate(region);
+        } catch (RuntimeException ignored) {
+        }
+    }
+}
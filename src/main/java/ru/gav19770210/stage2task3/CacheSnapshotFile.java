@@ -0,0 +1,256 @@
+package ru.gav19770210.stage2task3;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Класс <b>CacheSnapshotFile</b> реализует запись снимка кэшированных данных в файл и загрузку из него.
+ * <p>
+ * Снимок записывается во временный файл, отображённый в память, и атомарно заменяет предыдущий снимок,
+ * поэтому при аварийном завершении остаётся целый снимок. Загрузка читает файл, отображённый в память,
+ * без промежуточного копирования файла в кучу, поэтому размер снимка ограничен 2 Гб.
+ * Количество записей и длины полей проверяются по размеру файла до выделения памяти,
+ * поэтому повреждённый файл не загружается, но не прерывает создание прокси-объекта.
+ * <p>
+ * Вместо времён значений сохраняется их возраст относительно времени записи,
+ * поэтому снимок не зависит от начала отсчёта интерфейса получения текущего времени.
+ * <p>
+ * Формат файла: заголовок (признак, версия формата, количество записей), далее записи из
+ * идентификатора метода, ключа и значения, преобразованных {@link CacheSerializer},
+ * возраста значения, возраста загрузки значения, срока жизни и периода возврата устаревшего значения.
+ */
+final class CacheSnapshotFile {
+    private static final int MAGIC = 0x43534E50;
+    private static final int FORMAT_VERSION = 1;
+    /**
+     * Минимальный размер записи: три длины полей и четыре времени.
+     */
+    private static final int MIN_RECORD_SIZE = 3 * Integer.BYTES + 4 * Long.BYTES;
+    private static final System.Logger LOGGER = System.getLogger(CacheSnapshotFile.class.getName());
+    /**
+     * Планировщик периодической записи снимков.
+     */
+    private static volatile ScheduledExecutorService scheduler;
+    private final Path file;
+    private final CacheSerializer serializer;
+    private final Clockable clock;
+    /**
+     * Запланированная периодическая запись снимка, null - не запланирована.
+     */
+    private volatile ScheduledFuture<?> scheduled;
+
+    public CacheSnapshotFile(Path file, CacheSerializer serializer, Clockable clock) {
+        this.file = file;
+        this.serializer = serializer;
+        this.clock = clock;
+    }
+
+    /**
+     * Загрузка значений, срок жизни которых не истёк, из файла снимка в хранилище.
+     * <p>
+     * Отсутствующий или повреждённый файл не является ошибкой, в этом случае значения не загружаются.
+     * Записи, которые не удалось преобразовать, или методы, которых нет в хранилище, пропускаются.
+     *
+     * @param cacheStore хранилище кэшированных данных
+     * @return количество загруженных значений
+     */
+    public int load(CacheStore cacheStore) {
+        if (!Files.isRegularFile(file)) {
+            return 0;
+        }
+        var methodStores = new HashMap<String, CacheMethodStore>();
+        cacheStore.getMethodStores().forEach((method, methodStore) -> methodStores.put(getMethodId(method), methodStore));
+        var currentTime = clock.currentTimeMillis();
+        var loaded = 0;
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 12 || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                return 0;
+            }
+            var count = buffer.getInt();
+            if (count < 0 || count > buffer.remaining() / MIN_RECORD_SIZE) {
+                return 0;
+            }
+            for (int i = 0; i < count; i++) {
+                var methodId = new String(getBytes(buffer), StandardCharsets.UTF_8);
+                var keyBytes = getBytes(buffer);
+                var valueBytes = getBytes(buffer);
+                var cacheAge = buffer.getLong();
+                var loadAge = buffer.getLong();
+                var expirePeriod = buffer.getLong();
+                var stalePeriod = buffer.getLong();
+
+                var methodStore = methodStores.get(methodId);
+                if (methodStore == null || methodStore.getExpirePeriod() != expirePeriod
+                        || expirePeriod > 0 && cacheAge > expirePeriod + stalePeriod) {
+                    continue;
+                }
+                try {
+                    var key = (Object[]) serializer.deserialize(keyBytes);
+                    var cacheKey = new CacheKey((Object[]) key[0], (Object[]) key[1]);
+                    var cacheValue = new CacheValue(serializer.deserialize(valueBytes),
+                            currentTime - cacheAge, currentTime - loadAge, expirePeriod, stalePeriod);
+                    methodStore.putValue(cacheKey, cacheValue);
+                    loaded++;
+                } catch (RuntimeException ignored) {
+                }
+            }
+        } catch (IOException | RuntimeException ignored) {
+        }
+        return loaded;
+    }
+
+    /**
+     * Запись снимка значений хранилища в файл.
+     * Значения, которые не удалось преобразовать, не записываются.
+     *
+     * @param cacheStore хранилище кэшированных данных
+     * @throws UncheckedIOException  ошибка записи файла
+     * @throws IllegalStateException размер снимка превышает 2 Гб
+     */
+    public void save(CacheStore cacheStore) {
+        var currentTime = clock.currentTimeMillis();
+        List<byte[][]> records = new ArrayList<>();
+        List<CacheValue> values = new ArrayList<>();
+        cacheStore.getMethodStores().forEach((method, methodStore) -> {
+            var methodId = getMethodId(method).getBytes(StandardCharsets.UTF_8);
+            methodStore.forEach((cacheKey, cacheValue) -> {
+                if (cacheKey.getStateFields() == null || cacheValue.isExpire(currentTime)) {
+                    return;
+                }
+                try {
+                    records.add(new byte[][]{methodId,
+                            serializer.serialize(new Object[]{cacheKey.getParameters(), cacheKey.getStateFields()}),
+                            serializer.serialize(cacheValue.getValue())});
+                    values.add(cacheValue);
+                } catch (RuntimeException ignored) {
+                }
+            });
+        });
+
+        long size = 12;
+        for (var record : records) {
+            size += 12L + record[0].length + record[1].length + record[2].length + 4 * Long.BYTES;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Размер снимка кэша превышает 2 Гб: " + size + " байт");
+        }
+        var tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (var channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                var buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(records.size());
+                for (int i = 0; i < records.size(); i++) {
+                    var record = records.get(i);
+                    var cacheValue = values.get(i);
+                    putBytes(buffer, record[0]);
+                    putBytes(buffer, record[1]);
+                    putBytes(buffer, record[2]);
+                    buffer.putLong(currentTime - cacheValue.getCacheTime())
+                            .putLong(currentTime - cacheValue.getLoadTime())
+                            .putLong(cacheValue.getExpirePeriod())
+                            .putLong(cacheValue.getStalePeriod());
+                }
+                buffer.force();
+            }
+            try {
+                Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать снимок кэша в файл " + file, e);
+        }
+    }
+
+    /**
+     * Планирование периодической записи снимка хранилища.
+     * Хранилище удерживается по слабой ссылке, после его удаления сборщиком мусора запись прекращается.
+     *
+     * @param cacheStore хранилище кэшированных данных
+     * @param period     период записи в миллисекундах
+     */
+    public void schedule(CacheStore cacheStore, long period) {
+        var cacheStoreRef = new WeakReference<>(cacheStore);
+        var future = new ScheduledFuture<?>[1];
+        future[0] = getScheduler().scheduleWithFixedDelay(() -> {
+            var store = cacheStoreRef.get();
+            if (store == null) {
+                future[0].cancel(false);
+                return;
+            }
+            try {
+                save(store);
+            } catch (RuntimeException e) {
+                LOGGER.log(System.Logger.Level.WARNING, "Ошибка записи снимка кэша в файл " + file, e);
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+        scheduled = future[0];
+    }
+
+    /**
+     * Отмена периодической записи снимка.
+     */
+    public void cancel() {
+        var future = scheduled;
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    private static String getMethodId(Method method) {
+        return method.toString();
+    }
+
+    /**
+     * Чтение поля записи с проверкой длины по оставшемуся размеру файла.
+     */
+    private static byte[] getBytes(ByteBuffer buffer) {
+        var length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalStateException("Повреждённая запись снимка кэша, длина поля: " + length);
+        }
+        var bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes.length).put(bytes);
+    }
+
+    private static ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            synchronized (CacheSnapshotFile.class) {
+                if (scheduler == null) {
+                    var executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                        var thread = new Thread(runnable, "cache-snapshot");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    executor.setRemoveOnCancelPolicy(true);
+                    scheduler = executor;
+                }
+            }
+        }
+        return scheduler;
+    }
+}
@@ -0,0 +1,9 @@
+package ru.gav19770210.stage2task3;
+
+/**
+ * Тип механизма отслеживания состояния кэшируемого объекта.
+ */
+public enum CacheStateType {
+    FIELDS,  // состояние определяется значениями полей объекта
+    VERSION  // состояние определяется номером версии, который увеличивается вызовами методов @Mutator
+}
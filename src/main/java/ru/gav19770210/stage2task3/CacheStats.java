@@ -0,0 +1,195 @@
+package ru.gav19770210.stage2task3;
+
+import java.util.Arrays;
+
+/**
+ * Класс <b>CacheStats</b> описывает неизменяемый снимок статистики работы кэша.
+ * <p>
+ * Снимок формируется для метода прокси-объекта или для прокси-объекта в целом,
+ * см. {@link CacheFactory#getStats(Object)} и {@link CacheFactory#getMethodStats(Object)}.
+ */
+public final class CacheStats {
+    /**
+     * Количество интервалов гистограммы времени загрузки.
+     * Интервал i содержит загрузки длительностью менее 2^i микросекунд, последний интервал - все остальные.
+     */
+    public static final int HISTOGRAM_SIZE = 32;
+    private final long hitCount;
+    private final long missCount;
+    private final long loadSuccessCount;
+    private final long loadFailureCount;
+    private final long totalLoadTime;
+    private final long coalescedLoadCount;
+    private final long[] evictionCounts;
+    private final long entryCount;
+    private final long[] loadTimeHistogram;
+
+    CacheStats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount, long totalLoadTime,
+               long coalescedLoadCount, long[] evictionCounts, long entryCount, long[] loadTimeHistogram) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTime = totalLoadTime;
+        this.coalescedLoadCount = coalescedLoadCount;
+        this.evictionCounts = evictionCounts;
+        this.entryCount = entryCount;
+        this.loadTimeHistogram = loadTimeHistogram;
+    }
+
+    /**
+     * Пустая статистика.
+     */
+    static CacheStats empty() {
+        return new CacheStats(0, 0, 0, 0, 0, 0,
+                new long[CacheRemovalCause.values().length], 0, new long[HISTOGRAM_SIZE]);
+    }
+
+    /**
+     * Номер интервала гистограммы для времени загрузки.
+     *
+     * @param loadTime время загрузки в наносекундах
+     * @return номер интервала
+     */
+    static int histogramIndex(long loadTime) {
+        var micros = loadTime / 1000;
+        return Integer.min(64 - Long.numberOfLeadingZeros(micros), HISTOGRAM_SIZE - 1);
+    }
+
+    /**
+     * Количество вызовов, результат которых получен из кэша.
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Количество вызовов, для которых значение в кэше отсутствовало или его срок жизни истёк.
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Доля вызовов, результат которых получен из кэша.
+     */
+    public double getHitRate() {
+        var requestCount = hitCount + missCount;
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    public long getLoadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    public long getLoadFailureCount() {
+        return loadFailureCount;
+    }
+
+    /**
+     * Суммарное время загрузки значений в наносекундах.
+     */
+    public long getTotalLoadTime() {
+        return totalLoadTime;
+    }
+
+    /**
+     * Среднее время загрузки значения в наносекундах.
+     */
+    public double getAverageLoadPenalty() {
+        var loadCount = loadSuccessCount + loadFailureCount;
+        return loadCount == 0 ? 0.0 : (double) totalLoadTime / loadCount;
+    }
+
+    /**
+     * Количество вызовов, получивших результат загрузки, выполненной другим потоком.
+     */
+    public long getCoalescedLoadCount() {
+        return coalescedLoadCount;
+    }
+
+    /**
+     * Количество удалённых из кэша значений по заданной причине.
+     *
+     * @param cause причина удаления
+     */
+    public long getEvictionCount(CacheRemovalCause cause) {
+        return evictionCounts[cause.ordinal()];
+    }
+
+    /**
+     * Количество удалённых из кэша значений по всем причинам.
+     */
+    public long getEvictionCount() {
+        return Arrays.stream(evictionCounts).sum();
+    }
+
+    /**
+     * Количество значений в кэше на момент формирования снимка.
+     */
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Гистограмма времени загрузки значений, см. {@link #HISTOGRAM_SIZE}.
+     */
+    public long[] getLoadTimeHistogram() {
+        return loadTimeHistogram.clone();
+    }
+
+    /**
+     * Оценка перцентиля времени загрузки по гистограмме.
+     *
+     * @param percentile перцентиль от 0 до 100
+     * @return верхняя граница интервала гистограммы в наносекундах, 0 - загрузок не было
+     */
+    public long getLoadTimePercentile(double percentile) {
+        var loadCount = Arrays.stream(loadTimeHistogram).sum();
+        if (loadCount == 0) {
+            return 0;
+        }
+        var threshold = Math.ceil(loadCount * percentile / 100);
+        long count = 0;
+        for (int i = 0; i < loadTimeHistogram.length; i++) {
+            count += loadTimeHistogram[i];
+            if (count >= threshold) {
+                return (1L << i) * 1000;
+            }
+        }
+        return (1L << (HISTOGRAM_SIZE - 1)) * 1000;
+    }
+
+    /**
+     * Сложение статистики.
+     *
+     * @param other статистика, которая прибавляется к текущей
+     * @return новый снимок с суммой значений
+     */
+    public CacheStats plus(CacheStats other) {
+        var evictions = new long[evictionCounts.length];
+        for (int i = 0; i < evictions.length; i++) {
+            evictions[i] = evictionCounts[i] + other.evictionCounts[i];
+        }
+        var histogram = new long[HISTOGRAM_SIZE];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = loadTimeHistogram[i] + other.loadTimeHistogram[i];
+        }
+        return new CacheStats(hitCount + other.hitCount, missCount + other.missCount,
+                loadSuccessCount + other.loadSuccessCount, loadFailureCount + other.loadFailureCount,
+                totalLoadTime + other.totalLoadTime, coalescedLoadCount + other.coalescedLoadCount,
+                evictions, entryCount + other.entryCount, histogram);
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hitCount=" + hitCount
+                + ", missCount=" + missCount
+                + ", loadSuccessCount=" + loadSuccessCount
+                + ", loadFailureCount=" + loadFailureCount
+                + ", totalLoadTime=" + totalLoadTime
+                + ", coalescedLoadCount=" + coalescedLoadCount
+                + ", evictionCount=" + getEvictionCount()
+                + ", entryCount=" + entryCount + '}';
+    }
+}
@@ -0,0 +1,43 @@
+package ru.gav19770210.stage2task3;
+
+/**
+ * Интерфейс JMX для получения статистики работы кэша прокси-объекта или его метода.
+ * <p>
+ * Регистрация выполняется через {@link CacheFactory#registerMBean(Object, String)}.
+ */
+public interface CacheStatsMXBean {
+    long getHitCount();
+
+    long getMissCount();
+
+    double getHitRate();
+
+    long getLoadSuccessCount();
+
+    long getLoadFailureCount();
+
+    /**
+     * Среднее время загрузки значения в наносекундах.
+     */
+    double getAverageLoadPenalty();
+
+    /**
+     * 99-й перцентиль времени загрузки значения в наносекундах.
+     */
+    long getLoadTimePercentile99();
+
+    long getCoalescedLoadCount();
+
+    long getExpiredEvictionCount();
+
+    long getMutatorEvictionCount();
+
+    long getSizeEvictionCount();
+
+    /**
+     * Количество значений, удалённых по запросу через {@link CacheHandle}.
+     */
+    long getExplicitEvictionCount();
+
+    long getEntryCount();
+}
@@ -0,0 +1,80 @@
+package ru.gav19770210.stage2task3;
+
+import java.util.function.Supplier;
+
+/**
+ * Класс <b>CacheStatsMonitor</b> реализует интерфейс JMX статистики работы кэша.
+ * Каждое обращение к атрибуту формирует новый снимок статистики.
+ */
+final class CacheStatsMonitor implements CacheStatsMXBean {
+    private final Supplier<CacheStats> stats;
+
+    public CacheStatsMonitor(Supplier<CacheStats> stats) {
+        this.stats = stats;
+    }
+
+    @Override
+    public long getHitCount() {
+        return stats.get().getHitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return stats.get().getMissCount();
+    }
+
+    @Override
+    public double getHitRate() {
+        return stats.get().getHitRate();
+    }
+
+    @Override
+    public long getLoadSuccessCount() {
+        return stats.get().getLoadSuccessCount();
+    }
+
+    @Override
+    public long getLoadFailureCount() {
+        return stats.get().getLoadFailureCount();
+    }
+
+    @Override
+    public double getAverageLoadPenalty() {
+        return stats.get().getAverageLoadPenalty();
+    }
+
+    @Override
+    public long getLoadTimePercentile99() {
+        return stats.get().getLoadTimePercentile(99);
+    }
+
+    @Override
+    public long getCoalescedLoadCount() {
+        return stats.get().getCoalescedLoadCount();
+    }
+
+    @Override
+    public long getExpiredEvictionCount() {
+        return stats.get().getEvictionCount(CacheRemovalCause.EXPIRED);
+    }
+
+    @Override
+    public long getMutatorEvictionCount() {
+        return stats.get().getEvictionCount(CacheRemovalCause.MUTATOR);
+    }
+
+    @Override
+    public long getSizeEvictionCount() {
+        return stats.get().getEvictionCount(CacheRemovalCause.SIZE);
+    }
+
+    @Override
+    public long getExplicitEvictionCount() {
+        return stats.get().getEvictionCount(CacheRemovalCause.EXPLICIT);
+    }
+
+    @Override
+    public long getEntryCount() {
+        return stats.get().getEntryCount();
+    }
+}
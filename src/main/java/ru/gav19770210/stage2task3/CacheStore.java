@@ -1,94 +1,205 @@
 package ru.gav19770210.stage2task3;
 
 import java.lang.reflect.Method;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Класс <b>CacheStore</b> реализует хранение кэшируемых данных.
+ * <p>
+ * Хранилище создаётся для каждого прокси-объекта, либо одно на класс при области <b>CLASS</b>,
+ * см. {@link #forClass(Class)}.
  */
 final class CacheStore {
+    /**
+     * Хранилища в разрезе классов проксируемых объектов для области <b>CLASS</b>.
+     */
+    private static final ClassValue<CacheStore> CLASS_STORES = new ClassValue<>() {
+        @Override
+        protected CacheStore computeValue(Class<?> objectClass) {
+            return new CacheStore(objectClass);
+        }
+    };
     /**
      * Коллекция в разрезе методов проксируемого объекта для хранения кэшированных данных по уникальному ключу.
      */
-    private final Map<Method, Map<CacheKey, CacheValue>> cacheValues = new ConcurrentHashMap<>();
+    private final Map<Method, CacheMethodStore> cacheValues = new ConcurrentHashMap<>();
     /**
      * Минимальный срок жизни кэшированных значений в хранилище.
      */
-    private long minExpirePeriod = Long.MAX_VALUE;
+    private final long minExpirePeriod;
+    /**
+     * Признак выполненной инициализации хранилища, разделяемого несколькими прокси-объектами.
+     */
+    private final AtomicBoolean initialized = new AtomicBoolean();
 
     /**
-     * В конструкторе выполняется первоначальное заполнение коллекции <b>cacheValues</b>
-     * методами проксируемого объекта, помеченными аннотацией <b>@Cache</b>.
-     *
      * @param object проксируемый объект
      */
     public CacheStore(Object object) {
-        Arrays.stream(object.getClass().getMethods())
-                .filter(method -> method.isAnnotationPresent(Cache.class))
-                .forEach(method -> cacheValues.put(method, new ConcurrentHashMap<>()));
+        this(object.getClass());
     }
 
-    public long getMinExpirePeriod() {
-        return minExpirePeriod;
+    /**
+     * В конструкторе выполняется первоначальное заполнение коллекции <b>cacheValues</b>
+     * методами проксируемого класса, помеченными аннотацией <b>@Cache</b>, по метаданным класса.
+     *
+     * @param objectClass класс проксируемого объекта
+     */
+    private CacheStore(Class<?> objectClass) {
+        var metadata = CacheClassMetadata.forClass(objectClass);
+        metadata.getCacheMethods().forEach((method, cache) -> cacheValues.put(method,
+                createCacheMethodStore(cache, metadata.getCacheCleanerConfig())));
+        this.minExpirePeriod = cacheValues.values().stream()
+                .mapToLong(CacheMethodStore::getExpirePeriod)
+                .filter(expirePeriod -> expirePeriod > 0)
+                .min()
+                .orElse(Long.MAX_VALUE);
     }
 
     /**
-     * Получение значения из кэша по ключевым параметрам.
+     * Получение хранилища, разделяемого всеми прокси-объектами класса.
      *
-     * @param method   проксируемый метод
-     * @param cacheKey уникальный ключ, идентифицирующий значение
-     * @return объект кэшированного значения
+     * @param objectClass класс проксируемого объекта
+     * @return хранилище кэшированных данных класса
      */
-    public CacheValue getValue(Method method, CacheKey cacheKey) {
-        return this.cacheValues.get(method).get(cacheKey);
+    public static CacheStore forClass(Class<?> objectClass) {
+        return CLASS_STORES.get(objectClass);
     }
 
     /**
-     * Добавлене значения в кэш.
+     * Отметка инициализации хранилища, например загрузки снимка.
      *
-     * @param method     проксируемый метод
-     * @param cacheKey   уникальный ключ, идентифицирующий значение
-     * @param cacheValue объект кэшированного значения
-     */
-    public void putValue(Method method, CacheKey cacheKey, CacheValue cacheValue) {
-        this.cacheValues.get(method).put(cacheKey, cacheValue);
-        if (cacheValue.getExpirePeriod() != 0) {
-            minExpirePeriod = Long.min(minExpirePeriod, cacheValue.getExpirePeriod());
+     * @return true - вызов первый для хранилища и инициализацию нужно выполнить, иначе false
+     */
+    public boolean initialize() {
+        return initialized.compareAndSet(false, true);
+    }
+
+    /**
+     * Создание хранилища кэшированных данных метода по настройкам аннотаций.
+     *
+     * @param cache              аннотация кэшируемого метода
+     * @param cacheCleanerConfig аннотация настроек кэширования проксируемого объекта, может отсутствовать
+     * @return хранилище кэшированных данных метода
+     */
+    private static CacheMethodStore createCacheMethodStore(Cache cache, CacheCleanerConfig cacheCleanerConfig) {
+        var maxEntries = cache.maxEntries();
+        var maxWeight = cache.maxWeight();
+        var cleanBatchSize = 0;
+        if (Objects.nonNull(cacheCleanerConfig)) {
+            maxEntries = maxEntries > 0 ? maxEntries : cacheCleanerConfig.maxEntries();
+            maxWeight = maxWeight > 0 ? maxWeight : cacheCleanerConfig.maxWeight();
+            cleanBatchSize = cacheCleanerConfig.cleanBatchSize();
+        }
+        if (cache.offHeapMaxBytes() > 0 && maxEntries == 0 && maxWeight == 0) {
+            throw new IllegalArgumentException("Хранилище вне кучи задано без ограничения размера кэша метода");
+        }
+        return new CacheMethodStore(cache.expirePeriod(), maxEntries, maxWeight, createWeigher(cache.weigher()),
+                cleanBatchSize, cache.offHeapMaxBytes(),
+                cache.offHeapMaxBytes() > 0 ? CacheUtils.createInstance(cache.serializer()) : null);
+    }
+
+    private static CacheWeigher createWeigher(Class<? extends CacheWeigher> weigherClass) {
+        if (weigherClass == CacheWeigher.class) {
+            return value -> 1;
         }
+        return CacheUtils.createInstance(weigherClass);
+    }
+
+    public long getMinExpirePeriod() {
+        return minExpirePeriod;
     }
 
     /**
-     * Очистка кэшированных данных с истёкшим сроком жизни.
+     * Получение ближайшего времени истечения срока жизни значений по всем методам.
      *
-     * @param expireTime время, на которое выполняется проверка
+     * @return время истечения срока жизни, Long.MAX_VALUE - значений с не нулевым сроком жизни нет
      */
-    public void cleanExpireCache(long expireTime) {
+    public long getNextExpireTime() {
+        var nextExpireTime = Long.MAX_VALUE;
         for (var cacheMethod : this.cacheValues.values()) {
-            cleanExpireCacheMethod(cacheMethod, expireTime);
+            nextExpireTime = Long.min(nextExpireTime, cacheMethod.getNextExpireTime());
         }
+        return nextExpireTime;
     }
 
     /**
-     * Очистка кэшированных данных с истёкшим сроком жизни для заданного метода.
+     * Получение хранилищ кэшированных данных в разрезе методов.
      *
-     * @param method     метод, по которому выполняется анализ кэшированных данных
-     * @param expireTime время, на которое выполняется проверка
+     * @return неизменяемая коллекция хранилищ
      */
-    public void cleanExpireCacheForMethod(Method method, long expireTime) {
-        var cacheMethod = this.cacheValues.get(method);
-        if (Objects.nonNull(cacheMethod)) {
-            cleanExpireCacheMethod(cacheMethod, expireTime);
-        }
+    public Map<Method, CacheMethodStore> getMethodStores() {
+        return Collections.unmodifiableMap(this.cacheValues);
+    }
+
+    /**
+     * Получение хранилища кэшированных данных метода.
+     *
+     * @param method проксируемый метод
+     * @return хранилище кэшированных данных метода
+     */
+    public CacheMethodStore getMethodStore(Method method) {
+        return this.cacheValues.get(method);
     }
 
-    private void cleanExpireCacheMethod(Map<CacheKey, CacheValue> cacheMethod, long expireTime) {
-        for (var cacheValueEntry : cacheMethod.entrySet()) {
-            if (cacheValueEntry.getValue().isExpire(expireTime)) {
-                cacheMethod.remove(cacheValueEntry.getKey());
+    /**
+     * Получение статистики работы кэша в разрезе методов.
+     *
+     * @return статистика по методам проксируемого объекта
+     */
+    public Map<Method, CacheStats> getMethodStats() {
+        Map<Method, CacheStats> methodStats = new HashMap<>();
+        this.cacheValues.forEach((method, cacheMethod) -> methodStats.put(method, cacheMethod.getStats()));
+        return methodStats;
+    }
+
+    /**
+     * Получение статистики работы кэша по всем методам.
+     *
+     * @return статистика по проксируемому объекту
+     */
+    public CacheStats getStats() {
+        return this.cacheValues.values().stream()
+                .map(CacheMethodStore::getStats)
+                .reduce(CacheStats.empty(), CacheStats::plus);
+    }
+
+    /**
+     * Удаление значений методов с заданным именем, null - всех методов.
+     *
+     * @param methodName имя кэшируемого метода
+     * @return true - найден хотя бы один метод с заданным именем
+     */
+    public boolean invalidate(String methodName) {
+        var found = false;
+        for (var entry : this.cacheValues.entrySet()) {
+            if (methodName == null || entry.getKey().getName().equals(methodName)) {
+                entry.getValue().invalidateAll();
+                found = true;
             }
         }
+        return found;
+    }
+
+    /**
+     * Очистка кэшированных данных с истёкшим сроком жизни.
+     * <p>
+     * Каждый метод очищается не более чем на размер пакета очистки,
+     * оставшиеся значения удаляются следующими вызовами.
+     *
+     * @param expireTime время, на которое выполняется проверка
+     * @return true - остались значения, срок жизни которых истёк на время проверки
+     */
+    public boolean cleanExpireCache(long expireTime) {
+        var hasExpired = false;
+        for (var cacheMethod : this.cacheValues.values()) {
+            hasExpired |= cacheMethod.cleanExpireCache(expireTime);
+        }
+        return hasExpired;
     }
 }
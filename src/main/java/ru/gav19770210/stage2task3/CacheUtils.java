@@ -1,8 +1,5 @@
 package ru.gav19770210.stage2task3;
 
-import java.util.Arrays;
-import java.util.Objects;
-
 public class CacheUtils {
     /**
      * Проверка, имеет ли исходный объект методы с аннотацией <b>@Cache</b>
@@ -11,8 +8,7 @@ public class CacheUtils {
      * @return  true - исходный объект имеет методы с аннотацией <b>@Cache</b>, иначе false
      */
     public static boolean objectIsCacheable(Object object) {
-        return Arrays.stream(object.getClass().getMethods())
-                .anyMatch(method -> method.isAnnotationPresent(Cache.class));
+        return CacheClassMetadata.forClass(object.getClass()).isCacheable();
     }
 
     /**
@@ -22,9 +18,7 @@ public class CacheUtils {
      * @return  true - исходный объект имеет методы с аннотацией <b>@Cache</b>, иначе false
      */
     public static boolean objectIsCacheableWithExpirePeriod(Object object) {
-        return Arrays.stream(object.getClass().getMethods())
-                .filter(method -> method.isAnnotationPresent(Cache.class))
-                .anyMatch(method -> method.getAnnotation(Cache.class).expirePeriod() > 0);
+        return CacheClassMetadata.forClass(object.getClass()).isCacheableWithExpirePeriod();
     }
 
     /**
@@ -34,7 +28,40 @@ public class CacheUtils {
      * @return  тип механизма очистки кэшированных данных
      */
     public static CacheCleanerType getCacheCleanerType(Object object) {
-        var cacheCleanerConfig = object.getClass().getAnnotation(CacheCleanerConfig.class);
-        return Objects.nonNull(cacheCleanerConfig) ? cacheCleanerConfig.cacheCleanerType() : CacheCleanerType.GET_VALUE;
+        return CacheClassMetadata.forClass(object.getClass()).getCleanerType();
+    }
+
+    /**
+     * Получение типа механизма отслеживания состояния исходного объекта.
+     *
+     * @param object    исходный объект
+     * @return  тип механизма отслеживания состояния
+     */
+    public static CacheStateType getCacheStateType(Object object) {
+        return CacheClassMetadata.forClass(object.getClass()).getStateType();
+    }
+
+    /**
+     * Получение области хранилища кэшированных данных исходного объекта.
+     *
+     * @param object    исходный объект
+     * @return  область хранилища кэшированных данных
+     */
+    public static CacheScope getCacheScope(Object object) {
+        return CacheClassMetadata.forClass(object.getClass()).getScope();
+    }
+
+    /**
+     * Создание объекта класса, заданного в аннотации, через конструктор без параметров.
+     *
+     * @param instanceClass класс объекта
+     * @return  созданный объект
+     */
+    public static <T> T createInstance(Class<T> instanceClass) {
+        try {
+            return instanceClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Не удалось создать объект класса " + instanceClass.getName(), e);
+        }
     }
 }
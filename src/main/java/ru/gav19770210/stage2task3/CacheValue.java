@@ -1,52 +1,137 @@
 package ru.gav19770210.stage2task3;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Класс <b>CacheValue</b> описывает значение в хранилище кэшируемых данных.
+ * <p>
+ * Кэшированное значение неизменяемо, при загрузке нового значения в хранилище помещается новый объект.
+ * Изменяемым является только время последнего обращения, запись которого видна всем потокам.
+ * <p>
+ * Незавершённый результат асинхронного метода ({@link CompletableFuture}) не истекает и не устаревает:
+ * срок жизни отсчитывается от его завершения, после которого в хранилище помещается новое значение.
  */
 final class CacheValue {
     /**
      * Срок жизни кэшированного значения.
      */
     private final long expirePeriod;
+    /**
+     * Период после истечения срока жизни, в течение которого значение может быть возвращено
+     * на время его обновления в фоновом режиме.
+     */
+    private final long stalePeriod;
+    /**
+     * Время загрузки значения.
+     */
+    private final long loadTime;
     /**
      * Кэшированное значение.
      */
-    private Object value;
+    private final Object value;
     /**
-     * Время помещения значения в кэш или его обновления в кэше.
+     * Время помещения значения в кэш или последнего обращения к нему.
      */
-    private long cacheTime;
+    private volatile long cacheTime;
 
-    public CacheValue(Object value, long cacheTime, long expirePeriod) {
+    public CacheValue(Object value, long cacheTime, long expirePeriod, long stalePeriod) {
+        this(value, cacheTime, cacheTime, expirePeriod, stalePeriod);
+    }
+
+    /**
+     * Восстановление кэшированного значения с сохранёнными временами, например при возврате из внешнего хранилища.
+     */
+    public CacheValue(Object value, long cacheTime, long loadTime, long expirePeriod, long stalePeriod) {
         this.value = value;
         this.cacheTime = cacheTime;
+        this.loadTime = loadTime;
         this.expirePeriod = expirePeriod;
+        this.stalePeriod = stalePeriod;
     }
 
     public Object getValue() {
         return value;
     }
 
-    public void setValue(Object value) {
-        this.value = value;
-    }
-
+    /**
+     * Фиксация времени обращения к значению.
+     * Запись выполняется только при изменении времени, чтобы частые обращения не изменяли общую память.
+     *
+     * @param cacheTime время обращения
+     */
     public void setCacheTime(long cacheTime) {
-        this.cacheTime = cacheTime;
+        if (this.cacheTime != cacheTime) {
+            this.cacheTime = cacheTime;
+        }
     }
 
     public long getExpirePeriod() {
         return expirePeriod;
     }
 
+    public long getStalePeriod() {
+        return stalePeriod;
+    }
+
+    public long getCacheTime() {
+        return cacheTime;
+    }
+
+    public long getLoadTime() {
+        return loadTime;
+    }
+
+    /**
+     * Время истечения срока жизни кэшированного значения, после которого оно удаляется из кэша.
+     *
+     * @return время последнего обращения к значению, увеличенное на срок жизни и период возврата устаревшего значения
+     */
+    public long getExpireTime() {
+        return this.cacheTime + this.expirePeriod + this.stalePeriod;
+    }
+
     /**
      * Проверка, истёк ли срок жизни кэшированного значения или нет.
+     * <p>
+     * Устаревшее значение, для которого не истёк период возврата на время обновления, не считается истёкшим.
      *
      * @param currentTime время, на которое выполняется проверка
      * @return true - срок жизни кэшированного значения истёк, иначе false
      */
     public boolean isExpire(long currentTime) {
-        return this.expirePeriod == 0 && currentTime == 0 || this.expirePeriod > 0
-                && currentTime > 0 && this.cacheTime + this.expirePeriod < currentTime;
+        return this.expirePeriod == 0 && currentTime == 0 || this.expirePeriod > 0 && currentTime > 0
+                && this.cacheTime + this.expirePeriod + this.stalePeriod < currentTime && !isPending();
+    }
+
+    /**
+     * Проверка, устарело ли кэшированное значение, т.е. истёк ли его срок жизни без учёта периода возврата
+     * на время обновления.
+     *
+     * @param currentTime время, на которое выполняется проверка
+     * @return true - кэшированное значение устарело, иначе false
+     */
+    public boolean isStale(long currentTime) {
+        return this.expirePeriod > 0 && currentTime > 0 && this.cacheTime + this.expirePeriod < currentTime
+                && !isPending();
+    }
+
+    /**
+     * Проверка, является ли значение незавершённым результатом асинхронного метода.
+     *
+     * @return true - значение является незавершённым {@link CompletableFuture}, иначе false
+     */
+    public boolean isPending() {
+        return this.value instanceof CompletableFuture<?> future && !future.isDone();
+    }
+
+    /**
+     * Проверка, требуется ли фоновое обновление кэшированного значения.
+     *
+     * @param currentTime  время, на которое выполняется проверка
+     * @param refreshAfter период после загрузки значения, по истечении которого оно обновляется, 0 - не обновляется
+     * @return true - требуется обновление значения, иначе false
+     */
+    public boolean isRefreshRequired(long currentTime, long refreshAfter) {
+        return refreshAfter > 0 && currentTime > 0 && this.loadTime + refreshAfter < currentTime;
     }
 }
@@ -0,0 +1,14 @@
+package ru.gav19770210.stage2task3;
+
+/**
+ * Функция загрузки кэшируемого значения.
+ */
+@FunctionalInterface
+interface CacheValueLoader {
+    /**
+     * Загрузка значения.
+     *
+     * @return загруженное значение
+     */
+    Object load() throws Throwable;
+}
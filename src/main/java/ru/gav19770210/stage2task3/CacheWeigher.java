@@ -0,0 +1,17 @@
+package ru.gav19770210.stage2task3;
+
+/**
+ * Интерфейс определения веса кэшированного значения.
+ * <p>
+ * Используется для ограничения суммарного веса значений метода в кэше, см. {@link Cache#maxWeight()}.
+ * Реализация должна иметь открытый конструктор без параметров.
+ */
+public interface CacheWeigher {
+    /**
+     * Вес кэшированного значения.
+     *
+     * @param value кэшированное значение
+     * @return неотрицательный вес значения
+     */
+    int weigh(Object value);
+}
@@ -8,4 +8,11 @@ import java.lang.annotation.Target;
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Mutator {
+    /**
+     *  Имена полей проксируемого объекта, которые изменяет метод.
+     *  <p>При вызове метода сбрасываются значения только тех кэшируемых методов,
+     *  которые зависят от этих полей (см. {@link Cache#dependsOn()}).
+     *  Если поля не заданы, то сбрасываются значения всех кэшируемых методов.
+     */
+    String[] fields() default {};
 }
@@ -2,8 +2,29 @@ package ru.gav19770210.stage2task3;
 
 import org.junit.jupiter.api.*;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class CacheTests {
     private final TestClock testClock = new TestClock(1L);
@@ -161,6 +182,824 @@ public class CacheTests {
         System.out.println();
     }
 
+    @DisplayName("Кэширование с отслеживанием состояния объекта по номеру версии")
+    @Test
+    public void testCacheableMethodWithVersionState() {
+        var versionObject = new TestVersionCacheableClass(10);
+        var versionProxy = (TestCacheable) CacheFactory.makeCacheable(versionObject, testClock);
+
+        Assertions.assertEquals(100, versionProxy.cacheableMethod(), "Вызов cacheableMethod №1 вернул НЕ верное значение");
+        Assertions.assertEquals(100, versionProxy.cacheableMethod(), "Вызов cacheableMethod №2 вернул НЕ верное значение");
+        Assertions.assertEquals(1, versionObject.callDoubleValueCount, "Вызов cacheableMethod №2 был выполнен");
+
+        System.out.println("Изменение состояния методом без аннотаций не меняет версию состояния");
+        versionProxy.unCacheableMethod();
+        Assertions.assertEquals(100, versionProxy.cacheableMethod(), "Вызов cacheableMethod №3 вернул НЕ верное значение");
+        Assertions.assertEquals(0, versionObject.callDoubleValueCount, "Вызов cacheableMethod №3 был выполнен");
+
+        System.out.println("Вызов метода-мутатора меняет версию состояния, в том числе при возврате к прежним значениям полей");
+        versionProxy.mutatorMethod(10);
+        Assertions.assertEquals(100, versionProxy.cacheableMethod(), "Вызов cacheableMethod №4 вернул НЕ верное значение");
+        Assertions.assertEquals(1, versionObject.callDoubleValueCount, "Вызов cacheableMethod №4 НЕ был выполнен");
+        Assertions.assertEquals(100, versionProxy.cacheableMethod(), "Вызов cacheableMethod №5 вернул НЕ верное значение");
+        Assertions.assertEquals(1, versionObject.callDoubleValueCount, "Вызов cacheableMethod №5 был выполнен");
+    }
+
+    @DisplayName("Вытеснение значений из кэша при ограничении количества значений")
+    @Test
+    public void testCacheableMethodWithMaxEntries() {
+        var boundedObject = new TestBoundedCacheableClass();
+        var boundedProxy = (TestBoundedCacheable) CacheFactory.makeCacheable(boundedObject, testClock);
+
+        System.out.println("Многократно вызываем кэшируемый метод с одним и тем же параметром");
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertEquals(1, boundedProxy.square(1), "Вызов square вернул НЕ верное значение");
+        }
+        Assertions.assertEquals(1, boundedObject.callCount, "Вызов square был выполнен повторно");
+
+        System.out.println("Вызываем кэшируемый метод с разными параметрами больше ограничения количества значений");
+        for (int i = 2; i <= 20; i++) {
+            Assertions.assertEquals(i * i, boundedProxy.square(i), "Вызов square вернул НЕ верное значение");
+        }
+        Assertions.assertEquals(20, boundedObject.callCount, "Количество вызовов square НЕ верное");
+
+        System.out.println("Часто используемое значение не вытеснено редко используемыми значениями");
+        Assertions.assertEquals(1, boundedProxy.square(1), "Вызов square вернул НЕ верное значение");
+        Assertions.assertEquals(20, boundedObject.callCount, "Вызов square был выполнен повторно");
+
+        System.out.println("Редко используемые значения вытеснены из кэша");
+        for (int i = 2; i <= 20; i++) {
+            boundedProxy.square(i);
+        }
+        Assertions.assertTrue(boundedObject.callCount > 30, "Значения НЕ были вытеснены из кэша");
+    }
+
+    @DisplayName("Перенос вытесненных значений в хранилище вне кучи и возврат при обращении")
+    @Test
+    public void testCacheableMethodWithOffHeapStore() {
+        var boundedObject = new TestBoundedCacheableClass();
+        var boundedProxy = (TestBoundedCacheable) CacheFactory.makeCacheable(boundedObject, testClock);
+
+        for (int i = 1; i <= 20; i++) {
+            Assertions.assertEquals(i * i, boundedProxy.offHeapSquare(i), "Вызов offHeapSquare №1 вернул НЕ верное значение");
+        }
+        for (int i = 1; i <= 20; i++) {
+            Assertions.assertEquals(i * i, boundedProxy.offHeapSquare(i), "Вызов offHeapSquare №2 вернул НЕ верное значение");
+        }
+        Assertions.assertEquals(20, boundedObject.callCount, "Вытесненные значения НЕ возвращены из хранилища вне кучи");
+        Assertions.assertEquals(20, CacheFactory.getStats(boundedProxy).getEntryCount(), "Количество значений в кэше НЕ верное");
+    }
+
+    @DisplayName("Повторное использование памяти и очистка по сроку жизни в хранилище вне кучи")
+    @Test
+    public void testOffHeapStoreArenaAndExpire() {
+        var metrics = new CacheMetrics();
+        var offHeapStore = new CacheOffHeapStore(4 * CacheOffHeapArena.BLOCK_SIZE, new CacheJavaSerializer(), metrics);
+        for (int i = 0; i < 100; i++) {
+            offHeapStore.putValue(new CacheKey(new Object[]{i}, 0L), new CacheValue(i, 1L, 0, 0));
+        }
+        Assertions.assertEquals(4, offHeapStore.size(), "Количество значений вне кучи НЕ ограничено размером хранилища");
+        Assertions.assertEquals(4 * CacheOffHeapArena.BLOCK_SIZE, offHeapStore.getAllocatedBytes(), "Память вне кучи выделена повторно");
+        Assertions.assertEquals(96, metrics.snapshot(0).getEvictionCount(CacheRemovalCause.SIZE), "Количество вытесненных значений НЕ верное");
+        for (int i = 96; i < 100; i++) {
+            var cacheValue = offHeapStore.removeValue(new CacheKey(new Object[]{i}, 0L));
+            Assertions.assertNotNull(cacheValue, "Значение " + i + " НЕ найдено вне кучи");
+            Assertions.assertEquals(i, cacheValue.getValue(), "Значение " + i + " восстановлено НЕ верно");
+        }
+        Assertions.assertEquals(0, offHeapStore.getUsedBytes(), "Блоки значений НЕ освобождены");
+
+        offHeapStore.putValue(new CacheKey(new Object[]{1}, 0L), new CacheValue(1, 1L, 1000, 0));
+        offHeapStore.putValue(new CacheKey(new Object[]{2}, 0L), new CacheValue(2, 5000L, 1000, 0));
+        offHeapStore.putValue(new CacheKey(new Object[]{3}, 0L), new CacheValue(3, 1L, 1000, 0));
+        offHeapStore.cleanExpireCache(2000L, Integer.MAX_VALUE);
+        Assertions.assertEquals(1, offHeapStore.size(), "Значения с истёкшим сроком жизни НЕ удалены");
+        Assertions.assertEquals(2, metrics.snapshot(0).getEvictionCount(CacheRemovalCause.EXPIRED), "Количество удалённых по сроку жизни значений НЕ верное");
+        Assertions.assertNotNull(offHeapStore.removeValue(new CacheKey(new Object[]{2}, 0L)), "Значение с НЕ истёкшим сроком жизни удалено");
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new CacheOffHeapStore(CacheOffHeapArena.BLOCK_SIZE - 1, new CacheJavaSerializer(), metrics),
+                "Создано хранилище вне кучи меньше размера блока");
+        var roundedStore = new CacheOffHeapStore(CacheOffHeapArena.BLOCK_SIZE * 3 / 2, new CacheJavaSerializer(), metrics);
+        roundedStore.putValue(new CacheKey(new Object[]{1}, 0L), new CacheValue(1, 1L, 0, 0));
+        Assertions.assertEquals(CacheOffHeapArena.BLOCK_SIZE, roundedStore.getAllocatedBytes(), "Размер хранилища вне кучи превышен");
+    }
+
+    @DisplayName("Загрузка кэшированных данных из снимка при создании прокси-объекта")
+    @Test
+    public void testCacheableMethodWithSnapshot() throws Exception {
+        Files.deleteIfExists(Path.of(TestPersistentCacheableClass.SNAPSHOT_FILE));
+        var savedObject = new TestPersistentCacheableClass();
+        var savedProxy = (TestBoundedCacheable) CacheFactory.makeCacheable(savedObject, testClock);
+        Assertions.assertEquals(9, savedProxy.square(3), "Вызов square №1 вернул НЕ верное значение");
+        CacheFactory.saveSnapshot(savedProxy);
+
+        var sharedObject = new TestPersistentCacheableClass();
+        var sharedProxy = (TestBoundedCacheable) CacheFactory.makeCacheable(sharedObject, testClock);
+        Assertions.assertEquals(9, sharedProxy.square(3), "Вызов square №2 вернул НЕ верное значение");
+        Assertions.assertEquals(0, sharedObject.callCount, "Значение НЕ получено из общего хранилища класса");
+
+        System.out.println("Загружаем снимок в новое хранилище, как при повторном запуске");
+        var loadedStore = new CacheStore(new TestPersistentCacheableClass());
+        var snapshotFile = new CacheSnapshotFile(Path.of(TestPersistentCacheableClass.SNAPSHOT_FILE),
+                new CacheJavaSerializer(), testClock);
+        Assertions.assertEquals(1, snapshotFile.load(loadedStore), "Значение НЕ загружено из снимка");
+        Assertions.assertEquals(1, loadedStore.getStats().getEntryCount(), "Количество загруженных значений НЕ верное");
+
+        System.out.println("Повреждённый снимок не загружается и не прерывает загрузку");
+        var snapshotBytes = Files.readAllBytes(Path.of(TestPersistentCacheableClass.SNAPSHOT_FILE));
+        var corruptBuffer = ByteBuffer.wrap(snapshotBytes.clone());
+        corruptBuffer.putInt(12, Integer.MAX_VALUE);
+        Files.write(Path.of(TestPersistentCacheableClass.SNAPSHOT_FILE), corruptBuffer.array());
+        Assertions.assertEquals(0, snapshotFile.load(new CacheStore(new TestPersistentCacheableClass())),
+                "Загружена запись с длиной поля больше размера файла");
+        corruptBuffer = ByteBuffer.wrap(snapshotBytes.clone());
+        corruptBuffer.putInt(12, -1);
+        Files.write(Path.of(TestPersistentCacheableClass.SNAPSHOT_FILE), corruptBuffer.array());
+        Assertions.assertEquals(0, snapshotFile.load(new CacheStore(new TestPersistentCacheableClass())),
+                "Загружена запись с отрицательной длиной поля");
+        corruptBuffer = ByteBuffer.wrap(snapshotBytes.clone());
+        corruptBuffer.putInt(8, Integer.MAX_VALUE);
+        Files.write(Path.of(TestPersistentCacheableClass.SNAPSHOT_FILE), corruptBuffer.array());
+        Assertions.assertEquals(0, snapshotFile.load(new CacheStore(new TestPersistentCacheableClass())),
+                "Загружен снимок с количеством записей больше размера файла");
+        Files.write(Path.of(TestPersistentCacheableClass.SNAPSHOT_FILE),
+                Arrays.copyOf(snapshotBytes, snapshotBytes.length - 1));
+        Assertions.assertEquals(0, snapshotFile.load(new CacheStore(new TestPersistentCacheableClass())),
+                "Загружен обрезанный снимок");
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> CacheFactory.makeCacheable(new TestInstancePersistentCacheableClass(), testClock),
+                "Сохранение в файл допущено для области хранилища INSTANCE");
+    }
+
+    @DisplayName("Возврат устаревшего значения на время его фонового обновления")
+    @Test
+    public void testCacheableMethodWithStaleWhileRevalidate() throws InterruptedException {
+        var refreshObject = new TestRefreshCacheableClass();
+        var refreshProxy = (TestRefreshCacheable) CacheFactory.makeCacheable(refreshObject, testClock);
+
+        Assertions.assertEquals(1, refreshProxy.loadNumber(), "Вызов loadNumber №1 вернул НЕ верное значение");
+        Assertions.assertEquals(1, refreshProxy.loadNumber(), "Вызов loadNumber №2 вернул НЕ верное значение");
+
+        System.out.println("Срок жизни значения истёк, но период возврата устаревшего значения не истёк");
+        testClock.time = 2000L;
+        Assertions.assertEquals(1, refreshProxy.loadNumber(), "Вызов loadNumber №3 НЕ вернул устаревшее значение");
+
+        System.out.println("Ожидаем завершения фонового обновления значения");
+        for (int i = 0; i < 100 && refreshObject.loadCount.get() < 2; i++) {
+            Thread.sleep(50);
+        }
+        Assertions.assertEquals(2, refreshObject.loadCount.get(), "Фоновое обновление значения НЕ было выполнено");
+        for (int i = 0; i < 100 && refreshProxy.loadNumber() != 2; i++) {
+            Thread.sleep(50);
+        }
+        Assertions.assertEquals(2, refreshProxy.loadNumber(), "Вызов loadNumber №4 НЕ вернул обновлённое значение");
+        Assertions.assertEquals(2, refreshObject.loadCount.get(), "Вызов loadNumber №4 был выполнен");
+    }
+
+    @DisplayName("Кэширование через прокси-объект сгенерированного класса")
+    @Test
+    public void testCacheableMethodWithGeneratedProxy() {
+        var generatedObject = new TestVersionCacheableClass(10);
+        var generatedProxy = (TestCacheable) CacheFactory.makeGeneratedCacheable(generatedObject, testClock);
+
+        Assertions.assertFalse(Proxy.isProxyClass(generatedProxy.getClass()), "Создан прокси-объект java.lang.reflect.Proxy");
+        Assertions.assertEquals(100, generatedProxy.cacheableMethod(), "Вызов cacheableMethod №1 вернул НЕ верное значение");
+        Assertions.assertEquals(100, generatedProxy.cacheableMethod(), "Вызов cacheableMethod №2 вернул НЕ верное значение");
+        Assertions.assertEquals(1, generatedObject.callDoubleValueCount, "Вызов cacheableMethod №2 был выполнен");
+
+        generatedProxy.mutatorMethod(20);
+        Assertions.assertEquals(200, generatedProxy.cacheableMethod(), "Вызов cacheableMethod №3 вернул НЕ верное значение");
+        Assertions.assertEquals(1, generatedObject.callDoubleValueCount, "Вызов cacheableMethod №3 НЕ был выполнен");
+        Assertions.assertEquals(generatedObject.hashCode(), generatedProxy.hashCode(), "Вызов hashCode НЕ передан исходному объекту");
+
+        for (var field : generatedProxy.getClass().getDeclaredFields()) {
+            Assertions.assertTrue(Modifier.isPrivate(field.getModifiers()) && Modifier.isFinal(field.getModifiers()),
+                    "Поле " + field.getName() + " прокси-объекта НЕ закрытое и НЕ неизменяемое");
+        }
+        var plainObject = new Object();
+        Assertions.assertSame(plainObject, CacheFactory.makeGeneratedCacheable(plainObject, testClock), "Создан прокси-объект для НЕ кэшируемого объекта");
+    }
+
+    @DisplayName("Проверяемые исключения в прокси-объектах java.lang.reflect.Proxy и сгенерированного класса")
+    @Test
+    public void testCacheableMethodCheckedExceptions() {
+        var proxies = List.of(
+                (TestCheckedCacheable) CacheFactory.makeCacheable(new TestCheckedCacheableClass(), testClock),
+                (TestCheckedCacheable) CacheFactory.makeGeneratedCacheable(new TestCheckedCacheableClass(), testClock));
+        for (var proxy : proxies) {
+            var undeclared = Assertions.assertThrows(UndeclaredThrowableException.class, proxy::loadUndeclared,
+                    "Не объявленное исключение НЕ обёрнуто: " + proxy.getClass());
+            Assertions.assertInstanceOf(IOException.class, undeclared.getCause(), "Причина исключения НЕ верная");
+            Assertions.assertThrows(IOException.class, proxy::loadDeclared,
+                    "Объявленное исключение обёрнуто: " + proxy.getClass());
+        }
+    }
+
+    @DisplayName("Статистика работы кэша прокси-объекта")
+    @Test
+    public void testCacheableMethodStats() throws Exception {
+        var statsObject = new TestVersionCacheableClass(10);
+        var statsProxy = (TestCacheable) CacheFactory.makeGeneratedCacheable(statsObject, testClock);
+
+        statsProxy.cacheableMethod();
+        statsProxy.cacheableMethod();
+        statsProxy.cacheableMethod();
+
+        var stats = CacheFactory.getStats(statsProxy);
+        Assertions.assertEquals(2, stats.getHitCount(), "Количество попаданий в кэш НЕ верное");
+        Assertions.assertEquals(1, stats.getMissCount(), "Количество промахов кэша НЕ верное");
+        Assertions.assertEquals(1, stats.getLoadSuccessCount(), "Количество загрузок значений НЕ верное");
+        Assertions.assertEquals(1, stats.getEntryCount(), "Количество значений в кэше НЕ верное");
+
+        var objectName = CacheFactory.registerMBean(statsProxy, "statsProxy");
+        try {
+            var server = ManagementFactory.getPlatformMBeanServer();
+            Assertions.assertTrue(server.isRegistered(objectName), "Статистика кэша НЕ зарегистрирована в JMX");
+            ((CacheHandle) statsProxy).invalidateAll();
+            Assertions.assertEquals(1L, server.getAttribute(objectName, "ExplicitEvictionCount"), "Количество удалённых по запросу значений в JMX НЕ верное");
+        } finally {
+            CacheFactory.unregisterMBean(objectName);
+        }
+    }
+
+    @DisplayName("Размер оценки частоты по количеству ключей, а не по суммарному весу")
+    @Test
+    public void testFrequencySketchCapacity() {
+        var sketch = new CacheFrequencySketch(16);
+        Assertions.assertEquals(16, sketch.capacity(), "Начальный размер таблицы НЕ верный");
+        sketch.ensureCapacity(100);
+        Assertions.assertEquals(128, sketch.capacity(), "Таблица НЕ увеличена по количеству ключей");
+        sketch.ensureCapacity(50);
+        Assertions.assertEquals(128, sketch.capacity(), "Таблица уменьшена");
+
+        var methodStore = new CacheMethodStore(0, 0, 100_000_000, value -> 1, 0);
+        for (int i = 0; i < 1000; i++) {
+            methodStore.putValue(new CacheKey(new Object[]{i}, 0L), new CacheValue(i, 0, 0, 0));
+        }
+        Assertions.assertEquals(1000, methodStore.getStats().getEntryCount(), "Значения вытеснены до ограничения веса");
+
+        var largeMethodStore = new CacheMethodStore(0, 1L << 40, 0, value -> 1, 0);
+        for (int i = 0; i < 1000; i++) {
+            largeMethodStore.putValue(new CacheKey(new Object[]{i}, 0L), new CacheValue(i, 0, 0, 0));
+        }
+        Assertions.assertEquals(1000, largeMethodStore.getStats().getEntryCount(), "Значения вытеснены до ограничения количества");
+    }
+
+    @DisplayName("Допуск в основную область кэша только кандидатов, вытесненных из окна")
+    @Test
+    public void testEvictionPolicyAdmission() {
+        var methodStore = new CacheMethodStore(0, 10, 0, value -> 1, 0);
+        for (int i = 0; i < 10; i++) {
+            var cacheKey = new CacheKey(new Object[]{i}, 0L);
+            methodStore.putValue(cacheKey, new CacheValue(i, 0, 0, 0));
+            for (int j = 0; j < 5; j++) {
+                methodStore.getValue(cacheKey, 0L);
+            }
+        }
+        for (int i = 100; i < 200; i++) {
+            methodStore.putValue(new CacheKey(new Object[]{i}, 0L), new CacheValue(i, 0, 0, 0));
+        }
+        var hotCount = 0;
+        for (int i = 0; i < 10; i++) {
+            if (methodStore.getValue(new CacheKey(new Object[]{i}, 0L), 0L) != null) {
+                hotCount++;
+            }
+        }
+        Assertions.assertEquals(10, methodStore.getStats().getEntryCount(), "Размер кэша НЕ ограничен");
+        Assertions.assertTrue(hotCount >= 9, "Часто используемые значения вытеснены однократными: осталось " + hotCount);
+    }
+
+    @DisplayName("Добавление и удаление хранилищ в сборщике кэшированных данных")
+    @Test
+    public void testCacheCleanerRegistration() {
+        var cleaner = new CacheCleaner(testClock, 2);
+        try {
+            var cacheStore = new CacheStore(new TestCacheableClass(10));
+            cleaner.addCacheStorage(cacheStore);
+            cleaner.addCacheStorage(new CacheStore(new TestCacheableClass(20)));
+            Assertions.assertEquals(2, cleaner.getCacheStorageCount(), "Хранилища НЕ добавлены в сборщик");
+            cleaner.removeCacheStorage(cacheStore);
+            Assertions.assertEquals(1, cleaner.getCacheStorageCount(), "Хранилище НЕ удалено из сборщика");
+        } finally {
+            cleaner.stopClean();
+        }
+        Assertions.assertTrue(cleaner.isStopped(), "Сборщик НЕ остановлен");
+        Assertions.assertEquals(0, cleaner.getCacheStorageCount(), "Хранилища НЕ удалены при остановке сборщика");
+    }
+
+    @DisplayName("Продолжение очистки после ошибки в задаче сборщика кэшированных данных")
+    @Test
+    public void testCacheCleanerContinuesAfterError() throws Exception {
+        var cleanCount = new CountDownLatch(2);
+        var failed = new AtomicInteger();
+        Clockable failingClock = () -> {
+            if (failed.getAndIncrement() == 0) {
+                throw new IllegalStateException("Тестовая ошибка очистки");
+            }
+            cleanCount.countDown();
+            return 1L;
+        };
+        var cleaner = new CacheCleaner(failingClock, 1);
+        try {
+            cleaner.addCacheStorage(new CacheStore(new TestShortExpireCacheableClass(10)));
+            Assertions.assertTrue(cleanCount.await(10, TimeUnit.SECONDS), "Очистка НЕ запланирована после ошибки");
+            Assertions.assertEquals(1, cleaner.getCacheStorageCount(), "Хранилище удалено из сборщика после ошибки");
+        } finally {
+            cleaner.stopClean();
+        }
+    }
+
+    @DisplayName("Очистка кэша с незавершённым результатом асинхронного метода")
+    @Test
+    public void testCleanExpireCacheWithPendingFuture() {
+        var methodStore = new CacheMethodStore(1000, 0, 0, value -> 1, 0);
+        var cacheKey = new CacheKey(new Object[0], 0L);
+        var pendingValue = new CacheValue(new CompletableFuture<Integer>(), 1L, 1000, 0);
+        methodStore.putValue(cacheKey, pendingValue);
+
+        Assertions.assertEquals(1001L, methodStore.getNextExpireTime(), "Незавершённое значение НЕ поставлено в очередь истечения срока жизни");
+        Assertions.assertFalse(methodStore.cleanExpireCache(500L), "Очистка НЕ завершена");
+        Assertions.assertSame(pendingValue, methodStore.getValue(cacheKey, 500L), "Незавершённое значение удалено до истечения срока жизни");
+        Assertions.assertFalse(methodStore.cleanExpireCache(5000L), "Очистка НЕ завершена");
+        Assertions.assertNull(methodStore.getValue(cacheKey, 5000L), "Незавершённое значение НЕ удалено по сроку жизни");
+        Assertions.assertEquals(Long.MAX_VALUE, methodStore.getNextExpireTime(), "Незавершённое значение повторно поставлено в очередь");
+
+        pendingValue = new CacheValue(new CompletableFuture<Integer>(), 4500L, 1000, 0);
+        methodStore.putValue(cacheKey, pendingValue);
+        var completedValue = new CacheValue(CompletableFuture.completedFuture(1), 5000L, 1000, 0);
+        Assertions.assertTrue(methodStore.replaceValue(cacheKey, pendingValue, completedValue), "Завершённое значение НЕ помещено в кэш");
+        Assertions.assertFalse(methodStore.cleanExpireCache(5600L), "Очистка НЕ завершена");
+        Assertions.assertSame(completedValue, methodStore.getValue(cacheKey, 5600L), "Завершённое значение удалено по сроку жизни незавершённого");
+        Assertions.assertEquals(6000L, methodStore.getNextExpireTime(), "Завершённое значение НЕ поставлено в очередь истечения срока жизни");
+        Assertions.assertFalse(methodStore.cleanExpireCache(7000L), "Очистка НЕ завершена");
+        Assertions.assertNull(methodStore.getValue(cacheKey, 7000L), "Завершённое значение НЕ удалено по сроку жизни");
+    }
+
+    @DisplayName("Очистка значений в порядке времени истечения срока жизни")
+    @Test
+    public void testCleanExpireCacheOrder() {
+        var methodStore = new CacheMethodStore(10, 0, 0, value -> 1, 0);
+        for (int i = 1; i <= 5; i++) {
+            methodStore.putValue(new CacheKey(new Object[]{i}, 0L), new CacheValue(i, i, 10, 0));
+        }
+        Assertions.assertEquals(11L, methodStore.getNextExpireTime(), "Время истечения головы очереди НЕ верное");
+        Assertions.assertFalse(methodStore.cleanExpireCache(13L), "Очистка НЕ завершена");
+        Assertions.assertEquals(3, methodStore.getStats().getEntryCount(), "Удалены НЕ только значения с истёкшим сроком жизни");
+        Assertions.assertEquals(13L, methodStore.getNextExpireTime(), "Время истечения головы очереди после очистки НЕ верное");
+
+        var offHeapMethodStore = new CacheMethodStore(10, 1, 0, value -> 1, 0, 1 << 20, new CacheJavaSerializer());
+        var key1 = new CacheKey(new Object[]{1}, 0L);
+        var key2 = new CacheKey(new Object[]{2}, 0L);
+        offHeapMethodStore.putValue(key1, new CacheValue(1, 1L, 10, 0));
+        offHeapMethodStore.putValue(key2, new CacheValue(2, 2L, 10, 0));
+        var heapKeys = new ArrayList<CacheKey>();
+        offHeapMethodStore.forEach((cacheKey, cacheValue) -> heapKeys.add(cacheKey));
+        Assertions.assertEquals(1, heapKeys.size(), "Значение НЕ вытеснено из кэша");
+        var offHeapKey = heapKeys.contains(key1) ? key2 : key1;
+        var heapKey = offHeapKey == key1 ? key2 : key1;
+
+        var promotedValue = offHeapMethodStore.getValue(offHeapKey, 8L);
+        Assertions.assertNotNull(promotedValue, "Значение НЕ возвращено из хранилища вне кучи");
+        Assertions.assertEquals(18L, promotedValue.getExpireTime(), "Время истечения возвращённого значения НЕ обновлено");
+        offHeapMethodStore.cleanExpireCache(14L);
+        Assertions.assertNotNull(offHeapMethodStore.getValue(offHeapKey, 14L), "Возвращённое значение удалено до истечения срока жизни");
+        Assertions.assertNull(offHeapMethodStore.getValue(heapKey, 14L), "Значение с истёкшим сроком жизни НЕ удалено");
+    }
+
+    @DisplayName("Очистка значений с истёкшим сроком жизни пакетами ограниченного размера")
+    @Test
+    public void testCleanExpireCacheWithBatchSize() {
+        var methodStore = new CacheMethodStore(1000, 0, 0, value -> 1, 2);
+        for (int i = 0; i < 5; i++) {
+            methodStore.putValue(new CacheKey(new Object[]{i}, 0), new CacheValue(i, 1L, 1000, 0));
+        }
+
+        Assertions.assertTrue(methodStore.cleanExpireCache(2000L), "Очистка №1 разобрала больше размера пакета");
+        Assertions.assertEquals(3, methodStore.getStats().getEntryCount(), "Очистка №1 удалила НЕ верное количество значений");
+        Assertions.assertTrue(methodStore.cleanExpireCache(2000L), "Очистка №2 разобрала больше размера пакета");
+        Assertions.assertFalse(methodStore.cleanExpireCache(2000L), "Очистка №3 НЕ завершила разбор очереди");
+        Assertions.assertEquals(0, methodStore.getStats().getEntryCount(), "Очистка НЕ удалила все значения");
+        Assertions.assertEquals(5, methodStore.getStats().getEvictionCount(CacheRemovalCause.EXPIRED),
+                "Количество удалений по сроку жизни НЕ верное");
+    }
+
+    @DisplayName("Сброс значений только методов, зависящих от изменяемых полей")
+    @Test
+    public void testMutatorWithDependentFields() {
+        for (var dependentObject : new TestDependentCacheableClass[]{
+                new TestDependentCacheableClass(), new TestVersionDependentCacheableClass()}) {
+            var dependentProxy = (TestDependentCacheable) CacheFactory.makeCacheable(dependentObject, testClock);
+
+            Assertions.assertEquals(1, dependentProxy.getA(), "Вызов getA №1 вернул НЕ верное значение");
+            Assertions.assertEquals(2, dependentProxy.getB(), "Вызов getB №1 вернул НЕ верное значение");
+            dependentProxy.setA(10);
+            Assertions.assertEquals(10, dependentProxy.getA(), "Вызов getA №2 вернул НЕ верное значение");
+            Assertions.assertEquals(2, dependentProxy.getB(), "Вызов getB №2 вернул НЕ верное значение");
+            Assertions.assertEquals(2, dependentObject.callACount, "Вызов getA №2 НЕ был выполнен");
+            Assertions.assertEquals(1, dependentObject.callBCount, "Вызов getB №2 был выполнен");
+        }
+    }
+
+    @DisplayName("Кэширование незавершённого результата асинхронного метода и удаление результата с ошибкой")
+    @Test
+    public void testCacheableAsyncMethod() {
+        var asyncObject = new TestAsyncCacheableClass();
+        var asyncProxy = (TestAsyncCacheable) CacheFactory.makeCacheable(asyncObject, testClock);
+
+        var failedFuture = asyncObject.nextFuture;
+        var future1 = asyncProxy.loadAsync();
+        var future2 = asyncProxy.loadAsync();
+        Assertions.assertEquals(1, asyncObject.callCount, "Вызов loadAsync №2 был выполнен");
+        Assertions.assertNotSame(failedFuture, future1, "Возвращён НЕ копия результата");
+        future1.cancel(false);
+        Assertions.assertFalse(failedFuture.isCancelled(), "Отмена копии отменила результат в кэше");
+
+        failedFuture.completeExceptionally(new IllegalStateException("test"));
+        Assertions.assertTrue(future2.isCompletedExceptionally(), "Копия результата НЕ завершена с ошибкой");
+
+        asyncObject.nextFuture = CompletableFuture.completedFuture(7);
+        Assertions.assertEquals(7, asyncProxy.loadAsync().join(), "Вызов loadAsync №3 вернул НЕ верное значение");
+        Assertions.assertEquals(7, asyncProxy.loadAsync().join(), "Вызов loadAsync №4 вернул НЕ верное значение");
+        Assertions.assertEquals(2, asyncObject.callCount, "Результат с ошибкой НЕ удалён из кэша");
+    }
+
+    @DisplayName("Замена и удаление по сроку жизни незавершённого результата асинхронного метода")
+    @Test
+    public void testCacheableAsyncMethodPendingValue() {
+        var asyncObject = new TestAsyncCacheableClass();
+        var asyncProxy = (TestAsyncCacheable) CacheFactory.makeCacheable(asyncObject, testClock);
+        var methodStores = ((CacheInvocationHandler) Proxy.getInvocationHandler(asyncProxy)).getCacheStore()
+                .getMethodStores();
+        var sumStore = methodStores.entrySet().stream()
+                .filter(entry -> entry.getKey().getName().equals("sumAsync")).findFirst().orElseThrow().getValue();
+        var loadStore = methodStores.entrySet().stream()
+                .filter(entry -> entry.getKey().getName().equals("loadAsync")).findFirst().orElseThrow().getValue();
+
+        System.out.println("Массив в параметрах изменён до завершения результата");
+        var values = new int[]{1, 2};
+        var sumFuture = asyncProxy.sumAsync(values);
+        values[0] = 3;
+        asyncObject.nextFuture.complete(5);
+        Assertions.assertEquals(5, sumFuture.join(), "Вызов sumAsync №1 вернул НЕ верное значение");
+        sumStore.forEach((cacheKey, cacheValue) ->
+                Assertions.assertFalse(cacheValue.isPending(), "Незавершённый результат НЕ заменён завершённым"));
+        Assertions.assertEquals(5, asyncProxy.sumAsync(new int[]{1, 2}).join(), "Вызов sumAsync №2 вернул НЕ верное значение");
+        Assertions.assertEquals(1, asyncObject.callCount, "Вызов sumAsync №2 был выполнен");
+
+        System.out.println("Результат не завершён до истечения срока жизни");
+        asyncObject.nextFuture = new CompletableFuture<>();
+        asyncProxy.loadAsync();
+        Assertions.assertEquals(1, loadStore.getStats().getEntryCount(), "Незавершённый результат НЕ помещён в кэш");
+        loadStore.cleanExpireCache(testClock.time + 500);
+        Assertions.assertEquals(1, loadStore.getStats().getEntryCount(), "Незавершённый результат удалён до истечения срока жизни");
+        loadStore.cleanExpireCache(testClock.time + 1001);
+        Assertions.assertEquals(0, loadStore.getStats().getEntryCount(), "Незавершённый результат НЕ удалён по сроку жизни");
+        Assertions.assertEquals(Long.MAX_VALUE, loadStore.getNextExpireTime(),
+                "Незавершённый результат повторно поставлен в очередь");
+    }
+
+    @DisplayName("Пакетное кэширование по элементам параметра-коллекции")
+    @Test
+    public void testBulkCacheableMethod() {
+        var bulkObject = new TestBulkCacheableClass();
+        var bulkProxy = (TestBulkCacheable) CacheFactory.makeCacheable(bulkObject, testClock);
+
+        Assertions.assertEquals(Map.of(1, 1, 2, 4), bulkProxy.squares(List.of(1, 2)), "Вызов squares №1 вернул НЕ верное значение");
+        var result = bulkProxy.squares(List.of(3, 2, 1, 4));
+        Assertions.assertEquals(List.of(3, 2, 1, 4), new ArrayList<>(result.keySet()), "Порядок элементов результата НЕ верный");
+        Assertions.assertEquals(Map.of(1, 1, 2, 4, 3, 9, 4, 16), result, "Вызов squares №2 вернул НЕ верное значение");
+        Assertions.assertEquals(List.of(List.of(1, 2), List.of(3, 4)), bulkObject.requests, "Метод вызван НЕ только с отсутствующими в кэше элементами");
+
+        bulkProxy.squares(List.of(4, 1));
+        Assertions.assertEquals(2, bulkObject.requests.size(), "Вызов squares №3 был выполнен");
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> CacheFactory.makeCacheable(new TestSharedBulkCacheableClass(), testClock),
+                "Общее хранилище допущено для пакетного кэширования");
+    }
+
+    @DisplayName("Разделение значений через общее хранилище второго уровня")
+    @Test
+    public void testCacheableMethodWithSharedStore() {
+        try (var server = new CacheSharedServer();
+             var client1 = new CacheSharedClient("localhost", server.getPort());
+             var client2 = new CacheSharedClient("localhost", server.getPort())) {
+            CacheFactory.setSharedStore(client1);
+            var sharedObject1 = new TestSharedCacheableClass(10);
+            var sharedProxy1 = (TestCacheable) CacheFactory.makeCacheable(sharedObject1, testClock);
+            Assertions.assertEquals(100, sharedProxy1.cacheableMethod(), "Вызов cacheableMethod №1 вернул НЕ верное значение");
+            Assertions.assertEquals(1, sharedObject1.callDoubleValueCount, "Вызов cacheableMethod №1 НЕ был выполнен");
+
+            CacheFactory.setSharedStore(client2);
+            var sharedObject2 = new TestSharedCacheableClass(10);
+            var sharedProxy2 = (TestCacheable) CacheFactory.makeCacheable(sharedObject2, testClock);
+            Assertions.assertEquals(100, sharedProxy2.cacheableMethod(), "Вызов cacheableMethod №2 вернул НЕ верное значение");
+            Assertions.assertEquals(0, sharedObject2.callDoubleValueCount, "Значение НЕ получено из общего хранилища");
+
+            System.out.println("Мутатор удаляет значения с нулевым сроком жизни из общего хранилища");
+            sharedProxy2.mutatorMethod(10);
+            Assertions.assertEquals(100, sharedProxy2.cacheableMethod(), "Вызов cacheableMethod №3 вернул НЕ верное значение");
+            Assertions.assertEquals(1, sharedObject2.callDoubleValueCount, "Значение получено из общего хранилища после мутатора");
+
+            sharedProxy2.mutatorMethod(20);
+            Assertions.assertEquals(200, sharedProxy2.cacheableMethod(), "Вызов cacheableMethod №4 вернул НЕ верное значение");
+            Assertions.assertEquals(1, sharedObject2.callDoubleValueCount, "Вызов cacheableMethod №4 НЕ был выполнен");
+
+            var sharedObject3 = new TestSharedCacheableClass(10);
+            var sharedProxy3 = (TestCacheable) CacheFactory.makeCacheable(sharedObject3, testClock);
+            Assertions.assertEquals(100, sharedProxy3.cacheableMethod(), "Вызов cacheableMethod №5 вернул НЕ верное значение");
+            Assertions.assertEquals(1, sharedObject3.callDoubleValueCount, "Значение НЕ удалено из общего хранилища мутатором");
+        } finally {
+            CacheFactory.setSharedStore(null);
+        }
+    }
+
+    @DisplayName("Асинхронный метод не использует общее хранилище второго уровня")
+    @Test
+    public void testAsyncCacheableMethodSkipsSharedStore() {
+        var sharedCalls = new AtomicInteger();
+        CacheFactory.setSharedStore(new CacheSharedStore() {
+            @Override
+            public byte[] get(String region, byte[] key) {
+                sharedCalls.incrementAndGet();
+                return null;
+            }
+
+            @Override
+            public void put(String region, byte[] key, byte[] value, long expirePeriod) {
+                sharedCalls.incrementAndGet();
+            }
+
+            @Override
+            public void invalidate(String region) {
+                sharedCalls.incrementAndGet();
+            }
+        });
+        try {
+            var asyncObject = new TestSharedAsyncCacheableClass();
+            var asyncProxy = (TestAsyncCacheable) CacheFactory.makeCacheable(asyncObject, testClock);
+            asyncObject.nextFuture.complete(5);
+            Assertions.assertEquals(5, asyncProxy.loadAsync().join(), "Вызов loadAsync вернул НЕ верное значение");
+            Assertions.assertEquals(0, sharedCalls.get(), "Асинхронный метод обратился к общему хранилищу");
+        } finally {
+            CacheFactory.setSharedStore(null);
+        }
+    }
+
+    @DisplayName("Общее хранилище прокси-объектов одного класса")
+    @Test
+    public void testCacheableMethodWithClassScope() {
+        var classObject1 = new TestClassScopeCacheableClass(10);
+        var classProxy1 = (TestCacheable) CacheFactory.makeCacheable(classObject1, testClock);
+        Assertions.assertEquals(100, classProxy1.cacheableMethod(), "Вызов cacheableMethod №1 вернул НЕ верное значение");
+        Assertions.assertEquals(1, classObject1.callDoubleValueCount, "Вызов cacheableMethod №1 НЕ был выполнен");
+
+        var classObject2 = new TestClassScopeCacheableClass(10);
+        var classProxy2 = (TestCacheable) CacheFactory.makeCacheable(classObject2, testClock);
+        Assertions.assertEquals(100, classProxy2.cacheableMethod(), "Вызов cacheableMethod №2 вернул НЕ верное значение");
+        Assertions.assertEquals(0, classObject2.callDoubleValueCount, "Значение НЕ получено из хранилища класса");
+
+        classProxy2.mutatorMethod(20);
+        Assertions.assertEquals(200, classProxy2.cacheableMethod(), "Вызов cacheableMethod №3 вернул НЕ верное значение");
+        Assertions.assertEquals(1, classObject2.callDoubleValueCount, "Вызов cacheableMethod №3 НЕ был выполнен");
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> CacheFactory.makeCacheable(new TestVersionClassScopeCacheableClass(10), testClock),
+                "Область CLASS допущена для типа отслеживания состояния VERSION");
+    }
+
+    @DisplayName("Метаданные класса общие для прокси-объектов, номера версий состояния - свои")
+    @Test
+    public void testCacheClassMetadataSharedByProxies() {
+        Assertions.assertSame(CacheClassMetadata.forClass(TestVersionCacheableClass.class),
+                CacheClassMetadata.forClass(TestVersionCacheableClass.class), "Метаданные класса НЕ общие");
+
+        var versionObject1 = new TestVersionCacheableClass(10);
+        var versionProxy1 = (TestCacheable) CacheFactory.makeCacheable(versionObject1, testClock);
+        var versionObject2 = new TestVersionCacheableClass(10);
+        var versionProxy2 = (TestCacheable) CacheFactory.makeCacheable(versionObject2, testClock);
+        Assertions.assertEquals(100, versionProxy1.cacheableMethod(), "Вызов cacheableMethod №1 вернул НЕ верное значение");
+        Assertions.assertEquals(100, versionProxy2.cacheableMethod(), "Вызов cacheableMethod №2 вернул НЕ верное значение");
+
+        versionProxy1.mutatorMethod(20);
+        Assertions.assertEquals(200, versionProxy1.cacheableMethod(), "Вызов cacheableMethod №3 вернул НЕ верное значение");
+        Assertions.assertEquals(100, versionProxy2.cacheableMethod(), "Вызов cacheableMethod №4 вернул НЕ верное значение");
+        Assertions.assertEquals(1, versionObject2.callDoubleValueCount, "Мутатор сбросил номер версии другого прокси-объекта");
+    }
+
+    @DisplayName("Удаление значений и закрытие прокси-объекта через CacheHandle")
+    @Test
+    public void testCacheHandle() {
+        var handleObject = new TestCacheableClass(10);
+        var handleProxy = (TestCacheable) CacheFactory.makeCacheable(handleObject, testClock);
+        var cacheHandle = (CacheHandle) handleProxy;
+        var cacheStore = ((CacheInvocationHandler) Proxy.getInvocationHandler(handleProxy)).getCacheStore();
+        var cleaner = CacheInvocationHandler.getCacheCleaner();
+        Assertions.assertTrue(cleaner.containsCacheStorage(cacheStore), "Хранилище НЕ добавлено в сборщик");
+
+        Assertions.assertEquals(100, handleProxy.cacheableMethod(), "Вызов cacheableMethod №1 вернул НЕ верное значение");
+        cacheHandle.invalidate("cacheableMethod");
+        Assertions.assertEquals(100, handleProxy.cacheableMethod(), "Вызов cacheableMethod №2 вернул НЕ верное значение");
+        Assertions.assertEquals(2, handleObject.callDoubleValueCount, "Значение НЕ удалено через invalidate");
+        cacheHandle.invalidateAll();
+        Assertions.assertEquals(100, handleProxy.cacheableMethod(), "Вызов cacheableMethod №3 вернул НЕ верное значение");
+        Assertions.assertEquals(3, handleObject.callDoubleValueCount, "Значение НЕ удалено через invalidateAll");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> cacheHandle.invalidate("unCacheableMethod"),
+                "Удаление значений не кэшируемого метода НЕ отклонено");
+
+        cacheHandle.close();
+        Assertions.assertFalse(cleaner.containsCacheStorage(cacheStore), "Хранилище НЕ снято со сборщика");
+        Assertions.assertEquals(100, handleProxy.cacheableMethod(), "Вызов cacheableMethod №4 вернул НЕ верное значение");
+        Assertions.assertEquals(100, handleProxy.cacheableMethod(), "Вызов cacheableMethod №5 вернул НЕ верное значение");
+        Assertions.assertEquals(5, handleObject.callDoubleValueCount, "Вызов закрытого прокси-объекта кэширован");
+        cacheHandle.close();
+    }
+
+    @DisplayName("Повторное использование ключа метода без параметров при неизменном состоянии объекта")
+    @Test
+    public void testNoArgsCacheKeyReuse() {
+        var noArgsObject = new TestCacheableClass(10);
+        var noArgsProxy = (TestCacheable) CacheFactory.makeCacheable(noArgsObject, testClock);
+        Assertions.assertEquals(100, noArgsProxy.cacheableMethod(), "Вызов cacheableMethod №1 вернул НЕ верное значение");
+        Assertions.assertEquals(100, noArgsProxy.cacheableMethod(), "Вызов cacheableMethod №2 вернул НЕ верное значение");
+        Assertions.assertEquals(1, noArgsObject.callDoubleValueCount, "Вызов cacheableMethod №2 был выполнен");
+
+        noArgsObject.intData = 20;
+        Assertions.assertEquals(200, noArgsProxy.cacheableMethod(), "Вызов cacheableMethod №3 вернул НЕ верное значение");
+        Assertions.assertEquals(2, noArgsObject.callDoubleValueCount, "Изменение состояния объекта НЕ учтено в ключе");
+        noArgsObject.intData = 10;
+        Assertions.assertEquals(100, noArgsProxy.cacheableMethod(), "Вызов cacheableMethod №4 вернул НЕ верное значение");
+        Assertions.assertEquals(2, noArgsObject.callDoubleValueCount, "Значение для прежнего состояния НЕ найдено");
+    }
+
+    @DisplayName("Монотонный и обновляемый в фоне интерфейсы получения текущего времени")
+    @Test
+    public void testCacheClocks() throws InterruptedException {
+        var monotonicTime = CacheMonotonicClock.INSTANCE.currentTimeMillis();
+        Assertions.assertTrue(CacheMonotonicClock.INSTANCE.currentTimeMillis() >= monotonicTime,
+                "Монотонное время уменьшилось");
+
+        var sourceTime = new AtomicLong(1000);
+        try (var coarseClock = new CacheCoarseClock(sourceTime::get, 5)) {
+            Assertions.assertEquals(1000, coarseClock.currentTimeMillis(), "Начальное время НЕ получено из источника");
+            sourceTime.set(2000);
+            var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (coarseClock.currentTimeMillis() != 2000 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            Assertions.assertEquals(2000, coarseClock.currentTimeMillis(), "Время НЕ обновлено в фоне");
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new CacheCoarseClock(0),
+                "Нулевая точность времени НЕ отклонена");
+
+        System.out.println("Не закрытый экземпляр удаляется сборщиком мусора");
+        var clockReference = new WeakReference<>(new CacheCoarseClock(sourceTime::get, 5));
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (clockReference.get() != null && System.nanoTime() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assertions.assertNull(clockReference.get(), "Не закрытый экземпляр удерживается задачей обновления времени");
+    }
+
+    @DisplayName("Формирование ключа по выбранным параметрам и через CacheKeyExtractor")
+    @Test
+    public void testCacheKeyComposition() {
+        var keyObject = new TestKeyCacheableClass();
+        var keyProxy = (TestKeyCacheable) CacheFactory.makeCacheable(keyObject, testClock);
+
+        Assertions.assertEquals(4, keyProxy.square(2, "trace-1"), "Вызов square №1 вернул НЕ верное значение");
+        Assertions.assertEquals(4, keyProxy.square(2, "trace-2"), "Вызов square №2 вернул НЕ верное значение");
+        Assertions.assertEquals(1, keyObject.callSquareCount, "Параметр вне keyParameters включён в ключ");
+
+        Assertions.assertEquals(5, keyProxy.length("Hello"), "Вызов length №1 вернул НЕ верное значение");
+        Assertions.assertEquals(5, keyProxy.length("HELLO"), "Вызов length №2 вернул НЕ верное значение");
+        Assertions.assertEquals(6, keyProxy.length("Hello!"), "Вызов length №3 вернул НЕ верное значение");
+        Assertions.assertEquals(2, keyObject.callLengthCount, "Ключ НЕ сформирован через CacheKeyExtractor");
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> CacheFactory.makeCacheable(new TestInvalidKeyCacheableClass(), testClock),
+                "Номер параметра вне сигнатуры метода НЕ отклонён");
+    }
+
+    @DisplayName("Сравнение параметров-массивов по содержимому и снимок ключа при помещении в кэш")
+    @Test
+    public void testCacheableMethodWithArrayArguments() {
+        var arrayObject = new TestArrayCacheableClass();
+        var arrayProxy = (TestArrayCacheable) CacheFactory.makeCacheable(arrayObject, testClock);
+
+        var values = new double[]{1, 2, 3};
+        Assertions.assertEquals(6, arrayProxy.sum(values), "Вызов sum №1 вернул НЕ верное значение");
+        Assertions.assertEquals(6, arrayProxy.sum(new double[]{1, 2, 3}), "Вызов sum №2 вернул НЕ верное значение");
+        Assertions.assertEquals(1, arrayObject.callSumCount, "Равные массивы НЕ найдены в кэше");
+
+        values[0] = 10;
+        Assertions.assertEquals(15, arrayProxy.sum(values), "Вызов sum №3 вернул НЕ верное значение");
+        Assertions.assertEquals(2, arrayObject.callSumCount, "Изменение массива НЕ учтено в ключе");
+        Assertions.assertEquals(6, arrayProxy.sum(new double[]{1, 2, 3}), "Вызов sum №4 вернул НЕ верное значение");
+        Assertions.assertEquals(2, arrayObject.callSumCount, "Ключ в кэше изменён вместе с массивом");
+    }
+
+    @DisplayName("Одновременные вызовы кэшируемого метода из нескольких потоков")
+    @Test
+    public void testCacheableMethodConcurrentCalls() throws Exception {
+        var refreshObject = new TestRefreshCacheableClass();
+        var refreshProxy = (TestRefreshCacheable) CacheFactory.makeCacheable(refreshObject, testClock);
+        var threadCount = 8;
+        var startLatch = new CountDownLatch(1);
+        var executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            var results = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < threadCount; i++) {
+                results.add(executor.submit(() -> {
+                    startLatch.await();
+                    var result = 0;
+                    for (int j = 0; j < 1000; j++) {
+                        result = refreshProxy.slowLoadNumber();
+                    }
+                    return result;
+                }));
+            }
+            startLatch.countDown();
+            for (var result : results) {
+                Assertions.assertEquals(1, result.get(10, TimeUnit.SECONDS), "Вызов slowLoadNumber вернул НЕ верное значение");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assertions.assertEquals(1, refreshObject.loadCount.get(), "Метод slowLoadNumber был вызван больше одного раза");
+    }
+
+    @DisplayName("Вызовы методов Object и одновременные вызовы кэшируемого метода и метода-мутатора")
+    @Test
+    public void testCacheableMethodTable() throws Exception {
+        Assertions.assertEquals(testCacheableObject.toString(), testCacheableProxy.toString(), "Вызов toString НЕ передан в объект");
+        Assertions.assertEquals(testCacheableObject.hashCode(), testCacheableProxy.hashCode(), "Вызов hashCode НЕ передан в объект");
+        Assertions.assertTrue(testCacheableProxy.equals(testCacheableObject), "Вызов equals НЕ передан в объект");
+
+        var threadCount = 4;
+        var startLatch = new CountDownLatch(1);
+        var executor = Executors.newFixedThreadPool(threadCount + 1);
+        try {
+            var results = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < threadCount; i++) {
+                results.add(executor.submit(() -> {
+                    startLatch.await();
+                    for (int j = 0; j < 10000; j++) {
+                        var result = testCacheableProxy.cacheableMethod();
+                        if (result != 100 && result != 200) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            results.add(executor.submit(() -> {
+                startLatch.await();
+                for (int j = 0; j < 1000; j++) {
+                    testCacheableProxy.mutatorMethod(j % 2 == 0 ? 20 : 10);
+                }
+                return true;
+            }));
+            startLatch.countDown();
+            for (var result : results) {
+                Assertions.assertTrue(result.get(10, TimeUnit.SECONDS), "Вызов cacheableMethod вернул НЕ верное значение");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        testCacheableProxy.mutatorMethod(30);
+        Assertions.assertEquals(300, testCacheableProxy.cacheableMethod(), "Вызов cacheableMethod после мутатора вернул НЕ верное значение");
+    }
+
+    @DisplayName("Объединение одновременных загрузок значения по одному ключу")
+    @Test
+    public void testCacheableMethodSingleFlight() throws Exception {
+        var loadObject = new TestSingleFlightCacheableClass();
+        var loadProxy = (TestSingleFlightCacheable) CacheFactory.makeCacheable(loadObject, testClock);
+        var executor = Executors.newFixedThreadPool(2);
+        try {
+            var firstResult = executor.submit(() -> loadProxy.load(7));
+            Assertions.assertTrue(loadObject.entered.await(10, TimeUnit.SECONDS), "Загрузка значения НЕ начата");
+            var secondResult = executor.submit(() -> loadProxy.load(7));
+            var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (CacheFactory.getStats(loadProxy).getCoalescedLoadCount() == 0 && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            Assertions.assertEquals(1, CacheFactory.getStats(loadProxy).getCoalescedLoadCount(), "Второй вызов НЕ ожидает выполняемую загрузку");
+            loadObject.release.countDown();
+            Assertions.assertEquals(14, firstResult.get(10, TimeUnit.SECONDS), "Вызов load №1 вернул НЕ верное значение");
+            Assertions.assertEquals(14, secondResult.get(10, TimeUnit.SECONDS), "Вызов load №2 вернул НЕ верное значение");
+        } finally {
+            loadObject.release.countDown();
+            executor.shutdownNow();
+        }
+        Assertions.assertEquals(1, loadObject.loadCount.get(), "Метод load был вызван больше одного раза");
+        Assertions.assertEquals(14, loadProxy.load(7), "Вызов load №3 вернул НЕ верное значение");
+        Assertions.assertEquals(1, loadObject.loadCount.get(), "Загруженное значение НЕ помещено в кэш");
+    }
+
     interface TestCacheable {
         int cacheableMethod();
 
@@ -214,6 +1053,355 @@ public class CacheTests {
         }
     }
 
+    static class TestShortExpireCacheableClass extends TestCacheableClass implements TestCacheable {
+        public TestShortExpireCacheableClass(int intData) {
+            super(intData);
+        }
+
+        @Override
+        @Cache(expirePeriod = 20)
+        public int cacheableMethod() {
+            return super.cacheableMethod();
+        }
+    }
+
+    @CacheCleanerConfig(cacheStateType = CacheStateType.VERSION)
+    static class TestVersionCacheableClass extends TestCacheableClass implements TestCacheable {
+        public TestVersionCacheableClass(int intData) {
+            super(intData);
+        }
+    }
+
+    interface TestBoundedCacheable {
+        int square(int value);
+
+        int offHeapSquare(int value);
+    }
+
+    static class TestBoundedCacheableClass implements TestBoundedCacheable {
+        @CacheTest
+        int callCount;
+
+        @Override
+        @Cache(maxEntries = 4)
+        public int square(int value) {
+            callCount++;
+            return value * value;
+        }
+
+        @Override
+        @Cache(maxEntries = 4, offHeapMaxBytes = 1 << 20)
+        public int offHeapSquare(int value) {
+            callCount++;
+            return value * value;
+        }
+    }
+
+    @CacheCleanerConfig(scope = CacheScope.CLASS)
+    @CachePersistence(file = TestPersistentCacheableClass.SNAPSHOT_FILE, period = 0)
+    static class TestPersistentCacheableClass implements TestBoundedCacheable {
+        static final String SNAPSHOT_FILE = "target/test-cache-snapshot.bin";
+        @CacheTest
+        int callCount;
+
+        @Override
+        @Cache(expirePeriod = 60000)
+        public int square(int value) {
+            callCount++;
+            return value * value;
+        }
+
+        @Override
+        @Cache
+        public int offHeapSquare(int value) {
+            callCount++;
+            return value * value;
+        }
+    }
+
+    @CachePersistence(file = TestPersistentCacheableClass.SNAPSHOT_FILE, period = 0)
+    static class TestInstancePersistentCacheableClass extends TestPersistentCacheableClass {
+    }
+
+    interface TestCheckedCacheable {
+        int loadUndeclared();
+
+        int loadDeclared() throws IOException;
+    }
+
+    static class TestCheckedCacheableClass implements TestCheckedCacheable {
+        @SuppressWarnings("unchecked")
+        private static <E extends Throwable> void sneakyThrow(Throwable e) throws E {
+            throw (E) e;
+        }
+
+        @Override
+        @Cache
+        public int loadUndeclared() {
+            sneakyThrow(new IOException("Не объявленное исключение"));
+            return 0;
+        }
+
+        @Override
+        @Cache
+        public int loadDeclared() throws IOException {
+            throw new IOException("Объявленное исключение");
+        }
+    }
+
+    interface TestAsyncCacheable {
+        CompletableFuture<Integer> loadAsync();
+
+        CompletableFuture<Integer> sumAsync(int[] values);
+    }
+
+    static class TestAsyncCacheableClass implements TestAsyncCacheable {
+        @CacheTest
+        int callCount;
+        @CacheTest
+        CompletableFuture<Integer> nextFuture = new CompletableFuture<>();
+
+        @Override
+        @Cache(expirePeriod = 1000)
+        public CompletableFuture<Integer> loadAsync() {
+            callCount++;
+            return nextFuture;
+        }
+
+        @Override
+        @Cache(expirePeriod = 1000)
+        public CompletableFuture<Integer> sumAsync(int[] values) {
+            callCount++;
+            return nextFuture;
+        }
+    }
+
+    static class TestSharedAsyncCacheableClass extends TestAsyncCacheableClass implements TestAsyncCacheable {
+        @Override
+        @Cache(expirePeriod = 1000, shared = true)
+        public CompletableFuture<Integer> loadAsync() {
+            return super.loadAsync();
+        }
+    }
+
+    interface TestBulkCacheable {
+        Map<Integer, Integer> squares(List<Integer> values);
+    }
+
+    static class TestBulkCacheableClass implements TestBulkCacheable {
+        @CacheTest
+        final List<List<Integer>> requests = new ArrayList<>();
+
+        @Override
+        @Cache
+        @BulkCache
+        public Map<Integer, Integer> squares(List<Integer> values) {
+            requests.add(List.copyOf(values));
+            var result = new HashMap<Integer, Integer>();
+            values.forEach(value -> result.put(value, value * value));
+            return result;
+        }
+    }
+
+    static class TestSharedBulkCacheableClass implements TestBulkCacheable {
+        @Override
+        @Cache(shared = true)
+        @BulkCache
+        public Map<Integer, Integer> squares(List<Integer> values) {
+            return Map.of();
+        }
+    }
+
+    static class TestSharedCacheableClass extends TestCacheableClass implements TestCacheable {
+        public TestSharedCacheableClass(int intData) {
+            super(intData);
+        }
+
+        @Override
+        @Cache(shared = true)
+        public int cacheableMethod() {
+            return super.cacheableMethod();
+        }
+
+        @Override
+        @Mutator
+        public void mutatorMethod(Object object) {
+            super.mutatorMethod(object);
+        }
+    }
+
+    @CacheCleanerConfig(scope = CacheScope.CLASS)
+    static class TestClassScopeCacheableClass extends TestCacheableClass implements TestCacheable {
+        public TestClassScopeCacheableClass(int intData) {
+            super(intData);
+        }
+    }
+
+    @CacheCleanerConfig(cacheStateType = CacheStateType.VERSION, scope = CacheScope.CLASS)
+    static class TestVersionClassScopeCacheableClass extends TestCacheableClass implements TestCacheable {
+        public TestVersionClassScopeCacheableClass(int intData) {
+            super(intData);
+        }
+    }
+
+    interface TestKeyCacheable {
+        int square(int value, String traceId);
+
+        int length(String text);
+    }
+
+    public static class TestLowerCaseKeyExtractor implements CacheKeyExtractor {
+        @Override
+        public Object extractKey(Object object, Object[] parameters) {
+            return ((String) parameters[0]).toLowerCase();
+        }
+    }
+
+    static class TestKeyCacheableClass implements TestKeyCacheable {
+        @CacheTest
+        int callSquareCount;
+        @CacheTest
+        int callLengthCount;
+
+        @Override
+        @Cache(keyParameters = 0)
+        public int square(int value, String traceId) {
+            callSquareCount++;
+            return value * value;
+        }
+
+        @Override
+        @Cache(keyExtractor = TestLowerCaseKeyExtractor.class)
+        public int length(String text) {
+            callLengthCount++;
+            return text.length();
+        }
+    }
+
+    static class TestInvalidKeyCacheableClass implements TestKeyCacheable {
+        @Override
+        @Cache(keyParameters = 2)
+        public int square(int value, String traceId) {
+            return value * value;
+        }
+
+        @Override
+        public int length(String text) {
+            return text.length();
+        }
+    }
+
+    interface TestArrayCacheable {
+        double sum(double[] values);
+    }
+
+    static class TestArrayCacheableClass implements TestArrayCacheable {
+        @CacheTest
+        int callSumCount;
+
+        @Override
+        @Cache
+        public double sum(double[] values) {
+            callSumCount++;
+            return Arrays.stream(values).sum();
+        }
+    }
+
+    interface TestDependentCacheable {
+        int getA();
+
+        int getB();
+
+        void setA(int a);
+    }
+
+    static class TestDependentCacheableClass implements TestDependentCacheable {
+        @CacheTest
+        int callACount;
+        @CacheTest
+        int callBCount;
+        private int a = 1;
+        private int b = 2;
+
+        @Override
+        @Cache(dependsOn = "a")
+        public int getA() {
+            callACount++;
+            return a;
+        }
+
+        @Override
+        @Cache(dependsOn = "b")
+        public int getB() {
+            callBCount++;
+            return b;
+        }
+
+        @Override
+        @Mutator(fields = "a")
+        public void setA(int a) {
+            this.a = a;
+        }
+    }
+
+    @CacheCleanerConfig(cacheStateType = CacheStateType.VERSION)
+    static class TestVersionDependentCacheableClass extends TestDependentCacheableClass implements TestDependentCacheable {
+    }
+
+    interface TestRefreshCacheable {
+        int loadNumber();
+
+        int slowLoadNumber();
+    }
+
+    static class TestRefreshCacheableClass implements TestRefreshCacheable {
+        @CacheTest
+        final AtomicInteger loadCount = new AtomicInteger();
+
+        @Override
+        @Cache(expirePeriod = 1000, staleWhileRevalidate = 5000)
+        public int loadNumber() {
+            return loadCount.incrementAndGet();
+        }
+
+        @Override
+        @Cache
+        public int slowLoadNumber() {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return loadCount.incrementAndGet();
+        }
+    }
+
+    interface TestSingleFlightCacheable {
+        int load(int key);
+    }
+
+    static class TestSingleFlightCacheableClass implements TestSingleFlightCacheable {
+        @CacheTest
+        final CountDownLatch entered = new CountDownLatch(1);
+        @CacheTest
+        final CountDownLatch release = new CountDownLatch(1);
+        @CacheTest
+        final AtomicInteger loadCount = new AtomicInteger();
+
+        @Override
+        @Cache
+        public int load(int key) {
+            loadCount.incrementAndGet();
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return key * 2;
+        }
+    }
+
     static class TestClockBlock implements Clockable {
         private final BlockingQueue<Long> time = new LinkedBlockingQueue<>();
         private final BlockingQueue<Boolean> ack = new LinkedBlockingQueue<>();